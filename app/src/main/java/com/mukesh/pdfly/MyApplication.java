@@ -1,6 +1,10 @@
 package com.mukesh.pdfly;
 
 import android.app.Application;
+
+import com.mukesh.pdfly.pdfrenderer.export.SaveJobManager;
+import com.mukesh.pdfly.pdfrenderer.helper.BitmapPool;
+import com.mukesh.pdfly.pdfrenderer.helper.PageBitmapCache;
 import com.tom_roush.pdfbox.android.PDFBoxResourceLoader;
 
 public class MyApplication extends Application {
@@ -8,5 +12,23 @@ public class MyApplication extends Application {
     public void onCreate() {
         super.onCreate();
         PDFBoxResourceLoader.init(getApplicationContext());
+        // Finish saves the process was killed in the middle of
+        SaveJobManager.getInstance(this).resumePendingJobs();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        // Cached and pooled bitmaps are only a speed-up, give them back first. Leaving the app
+        // also reports UI_HIDDEN and BACKGROUND, so those only halve them and coming back stays
+        // quick; they are emptied when memory is critical or the process is next in line to go.
+        if (level == TRIM_MEMORY_RUNNING_CRITICAL || level >= TRIM_MEMORY_MODERATE) {
+            PageBitmapCache.getInstance(this).clear();
+            BitmapPool.getInstance().clear();
+        } else if (level >= TRIM_MEMORY_RUNNING_LOW) {
+            // Pages the cache drops go to the pool, so trim the pool after it
+            PageBitmapCache.getInstance(this).trimToHalf();
+            BitmapPool.getInstance().trimToHalf();
+        }
     }
 }
@@ -3,29 +3,27 @@ package com.mukesh.pdfly.pdfrenderer.activity;
 import android.annotation.SuppressLint;
 import android.app.ProgressDialog;
 import android.content.Context;
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.database.Cursor;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
-import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Matrix;
 import android.graphics.Rect;
 import android.graphics.RenderEffect;
 import android.graphics.Shader;
-import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.graphics.drawable.GradientDrawable;
 import android.graphics.drawable.LayerDrawable;
-import android.graphics.pdf.PdfDocument;
 import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
 import android.provider.OpenableColumns;
 import android.text.InputType;
 import android.util.DisplayMetrics;
+import android.util.SparseArray;
 import android.util.TypedValue;
 import android.view.LayoutInflater;
 import android.view.MenuItem;
@@ -51,7 +49,8 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.widget.Toolbar;
 import androidx.core.content.ContextCompat;
-import androidx.core.content.FileProvider;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.bottomsheet.BottomSheetDialog;
 import com.google.android.material.datepicker.MaterialDatePicker;
@@ -61,12 +60,29 @@ import com.google.android.material.textfield.TextInputLayout;
 import com.mukesh.pdfly.BaseActivity;
 import com.mukesh.pdfly.DrawSettingsProvider;
 import com.mukesh.pdfly.databinding.ViewElementToolbarBinding;
-import com.mukesh.pdfly.pdfrenderer.helper.PdfRendererHelper;
+import com.mukesh.pdfly.pdfrenderer.adapter.PdfPageAdapter;
+import com.mukesh.pdfly.pdfrenderer.export.ExportProfile;
+import com.mukesh.pdfly.pdfrenderer.export.PageAnnotations;
+import com.mukesh.pdfly.pdfrenderer.export.SaveJobManager;
+import com.mukesh.pdfly.pdfrenderer.helper.AnnotationStore;
+import com.mukesh.pdfly.pdfrenderer.helper.PageRenderEngine;
 import com.mukesh.pdfly.pdfrenderer.helper.PenSettingsDialogHelper;
 import com.mukesh.pdfly.pdfrenderer.views.ShapeElementView;
 import com.mukesh.pdfly.pdfrenderer.helper.ShapePickerDialogHelper;
 import com.mukesh.pdfly.pdfrenderer.views.TextElementView;
+import com.mukesh.pdfly.pdfrenderer.views.TiledPageView;
 import com.mukesh.pdfly.pdfrenderer.helper.ToolManager;
+import com.mukesh.pdfly.pdfrenderer.model.AnnotationDocument;
+import com.mukesh.pdfly.pdfrenderer.model.AnnotationHistory;
+import com.mukesh.pdfly.pdfrenderer.model.AnnotationJournal;
+import com.mukesh.pdfly.pdfrenderer.model.AnnotationPage;
+import com.mukesh.pdfly.pdfrenderer.model.CheckmarkModel;
+import com.mukesh.pdfly.pdfrenderer.model.ElementModel;
+import com.mukesh.pdfly.pdfrenderer.model.InkStroke;
+import com.mukesh.pdfly.pdfrenderer.model.ShapeModel;
+import com.mukesh.pdfly.pdfrenderer.model.ShapeType;
+import com.mukesh.pdfly.pdfrenderer.model.SignatureModel;
+import com.mukesh.pdfly.pdfrenderer.model.TextModel;
 import com.mukesh.pdfly.pdfrenderer.views.DrawView;
 import com.mukesh.pdfly.R;
 import com.mukesh.pdfly.pdfrenderer.views.ZoomableFrameLayout;
@@ -78,12 +94,13 @@ import com.mukesh.pdfly.signature.views.OverlayElementView;
 import com.mukesh.pdfly.signature.views.SignatureElementView;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Calendar;
-import java.util.Iterator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Locale;
 
 public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvider {
@@ -92,9 +109,75 @@ public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvi
     private ImageView drawToolIconView;
     private Bitmap selectedSignatureBitmap = null;
 
-    private final List<ZoomableFrameLayout> zoomablePages = new ArrayList<>();
+    // The page views there are, each showing some page or none; not one per page
     private final List<DrawView> drawViews = new ArrayList<>();
-    private final List<OverlayElementView> overlayElements = new ArrayList<>();
+    // The page views showing a page, by page index
+    private final SparseArray<PdfPageAdapter.PageViewHolder> boundPages = new SparseArray<>();
+    // The view showing each element on a bound page
+    private final Map<ElementModel, OverlayElementView> overlayViews = new HashMap<>();
+    // Pages with strokes or overlays on them; every other page saves exactly as it was opened
+    private final BitSet dirtyPages = new BitSet();
+    // What the page views show; export reads this rather than the views
+    private AnnotationDocument annotationDocument = new AnnotationDocument();
+    // Undo and redo for annotationDocument, whichever tool made the edit
+    private AnnotationHistory annotationHistory = new AnnotationHistory(annotationDocument);
+    // Edits left from the last session, read before the pages were laid out
+    private AnnotationDocument pendingStoredAnnotations;
+    private Map<String, Bitmap> pendingStoredImages;
+    // Nothing is stored until the last session's edits are back, or they'd be overwritten
+    private boolean storedAnnotationsLoaded = false;
+    // Cleared once the edits are saved into a PDF or discarded
+    private boolean storeAnnotations = true;
+    // Pixels for the signatures in annotationDocument, by SignatureModel.imageKey
+    private final Map<String, Bitmap> signatureImages = new HashMap<>();
+    // Appends each edit to the store's journal as it happens, so a crash doesn't lose it
+    private final AnnotationDocument.ChangeListener annotationJournal = new AnnotationDocument.ChangeListener() {
+        @Override
+        public void onStrokeAdded(AnnotationPage page, InkStroke stroke) {
+            journal(AnnotationJournal.strokeAdded(page, stroke));
+        }
+
+        @Override
+        public void onStrokeRemoved(AnnotationPage page, InkStroke stroke) {
+            journal(AnnotationJournal.strokeRemoved(page, stroke));
+        }
+
+        @Override
+        public void onElementAdded(AnnotationPage page, ElementModel element) {
+            if (element instanceof SignatureModel && isJournaling()) {
+                String key = ((SignatureModel) element).imageKey;
+                Bitmap image = signatureImages.get(key);
+                if (image != null) {
+                    AnnotationStore.getInstance(PdfEditorActivity.this).appendImage(pdfUri, key, image);
+                }
+            }
+            journal(AnnotationJournal.elementPut(page, element));
+        }
+
+        @Override
+        public void onElementChanged(AnnotationPage page, ElementModel element) {
+            journal(AnnotationJournal.elementPut(page, element));
+        }
+
+        @Override
+        public void onElementRemoved(AnnotationPage page, ElementModel element) {
+            journal(AnnotationJournal.elementRemoved(page, element));
+        }
+
+        private void journal(byte[] record) {
+            if (isJournaling()) {
+                AnnotationStore.getInstance(PdfEditorActivity.this).append(pdfUri, record);
+            }
+        }
+    };
+
+    private PageRenderEngine renderEngine;
+    private RecyclerView pageList;
+    private LinearLayoutManager pageLayoutManager;
+    private PdfPageAdapter pageAdapter;
+    private ProgressDialog saveProgressDialog;
+    // The save the progress dialog is showing; other editors' saves are left alone
+    private long saveJobId;
 
     private ToolManager toolManager;
 
@@ -102,8 +185,10 @@ public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvi
 
     private Uri pdfUri;
     private boolean isEditable;
-    private LinearLayout pageContainer;
     private boolean isDrawMode = false;
+    // What drawing touches erase; null while they draw
+    private DrawView.EraseMode activeEraseMode;
+    private DrawView.EraseMode lastEraseMode = DrawView.EraseMode.WHOLE_STROKE;
     private ImageButton drawButton;
     private int selectedToolIndex = -1;
 
@@ -132,10 +217,6 @@ public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvi
     }
 
 
-    public enum ShapeType {
-        RECTANGLE, CIRCLE, ARROW, LINE
-    }
-
     @Override
     public int getCurrentPaintColor() {
         return globalPaintColor;
@@ -158,8 +239,26 @@ public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvi
                     return;
                 }
                 isDrawMode = true;
+                activeEraseMode = null;
                 for (DrawView dv : drawViews) {
                     dv.setDrawingEnabled(true);
+                    dv.setEraseMode(null);
+                }
+                break;
+
+            case ERASER:
+                if (selectedToolIndex == index) {
+                    // Tapped again: switch between whole strokes and just the ink under the finger
+                    lastEraseMode = lastEraseMode == DrawView.EraseMode.WHOLE_STROKE
+                            ? DrawView.EraseMode.PARTIAL : DrawView.EraseMode.WHOLE_STROKE;
+                    Toast.makeText(this, lastEraseMode == DrawView.EraseMode.WHOLE_STROKE
+                            ? "Eraser: whole strokes" : "Eraser: partial", Toast.LENGTH_SHORT).show();
+                }
+                isDrawMode = true;
+                activeEraseMode = lastEraseMode;
+                for (DrawView dv : drawViews) {
+                    dv.setDrawingEnabled(true);
+                    dv.setEraseMode(activeEraseMode);
                 }
                 break;
 
@@ -173,24 +272,10 @@ public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvi
                 break;
 
             case UNDO:
-                cleanOrphanOverlays();
-                if (!overlayElements.isEmpty()) {
-                    OverlayElementView last = overlayElements.get(overlayElements.size() - 1);
-                    ViewGroup parent = (ViewGroup) last.getParent();
-                    if (parent != null) {
-                        parent.removeView(last);
-                    }
-                    overlayElements.remove(overlayElements.size() - 1);
-                } else {
-                    for (DrawView dv : drawViews) {
-                        if (dv.isShown()) dv.undo();
-                    }
-                }
+                onHistoryApplied(annotationHistory.undo());
                 break;
             case REDO:
-                for (DrawView dv : drawViews) {
-                    if (dv.isShown()) dv.redo();
-                }
+                onHistoryApplied(annotationHistory.redo());
                 break;
             case SHAPE:
                 deselectAllOverlays();
@@ -289,11 +374,20 @@ public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvi
 //        pdfUri = Uri.parse(getIntent().getStringExtra("pdfUri"));
 //        isEditable = getIntent().getBooleanExtra("isEditable", false);
         Intent intent = getIntent();
-        Uri pdfUri = intent.getData();
+        pdfUri = intent.getData();
 
-        pageContainer = findViewById(R.id.pageContainer);
+        pageList = findViewById(R.id.pageList);
         drawButton = findViewById(R.id.drawButton);
-        pageContainer.setBackgroundColor(Color.parseColor("#EEEEEE"));
+        pageList.setBackgroundColor(Color.parseColor("#EEEEEE"));
+        pageLayoutManager = new LinearLayoutManager(this);
+        pageList.setLayoutManager(pageLayoutManager);
+        pageList.setHasFixedSize(true);
+        pageList.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+                updateVisiblePages();
+            }
+        });
 
         drawButton.setOnClickListener(v -> {
             isDrawMode = !isDrawMode;
@@ -347,108 +441,199 @@ public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvi
 
         shapeView.setLayoutParams(params);
         parent.addView(shapeView);
-        overlayElements.add(shapeView);
+        if (!addOverlayElement(parent, shapeView)) return;
         onElementSelected(shapeView);
     }
 
     private void renderAllPdfPages(Uri uri) {
-        int marginPx = dpToPx(12);
-
-        pageContainer.removeAllViews();
-        zoomablePages.clear();
+        pageList.setAdapter(null);
+        boundPages.clear();
         drawViews.clear();
-        overlayElements.clear();
+        overlayViews.clear();
+        dirtyPages.clear();
+        annotationDocument.clear();
+        annotationDocument.removeChangeListener(annotationJournal);
+        annotationDocument.addChangeListener(annotationJournal);
+        annotationHistory.clear();
+        signatureImages.clear();
+
+        storedAnnotationsLoaded = false;
+        AnnotationStore.getInstance(this).load(uri, (document, images) -> {
+            storedAnnotationsLoaded = true;
+            if (document == null) return;
+            if (pageAdapter == null || pageAdapter.getItemCount() == 0) {
+                pendingStoredAnnotations = document;
+                pendingStoredImages = images;
+            } else {
+                restoreAnnotations(document, images);
+            }
+        });
 
-        PdfRendererHelper.renderAllPages(this, uri, (bitmap, index) -> {
-            int renderHeight = bitmap.getHeight(); // Get exact rendered height
+        renderEngine = new PageRenderEngine(this, new PageRenderEngine.PageCallback() {
+            @Override
+            public void onDocumentOpened(int pageCount) {
+                // Views only for the pages near the viewport; bitmaps are attached as they render
+                pageAdapter.setPageCount(pageCount);
+                if (pendingStoredAnnotations != null) {
+                    restoreAnnotations(pendingStoredAnnotations, pendingStoredImages);
+                    pendingStoredAnnotations = null;
+                    pendingStoredImages = null;
+                }
+                pageList.post(() -> updateVisiblePages());
+            }
 
-            // === Zoomable Page Container ===
-            ZoomableFrameLayout zoomablePage = new ZoomableFrameLayout(this);
-            LinearLayout.LayoutParams pageLayoutParams = new LinearLayout.LayoutParams(
-                    ViewGroup.LayoutParams.MATCH_PARENT,
-                    renderHeight
-            );
-            pageLayoutParams.setMargins(0, marginPx, 0, marginPx);
-            zoomablePage.setLayoutParams(pageLayoutParams);
-            zoomablePage.setBackgroundColor(Color.WHITE);
-
-            // === Rendered PDF Content ===
-            ImageView imageView = new ImageView(this);
-            imageView.setImageBitmap(bitmap);
-            imageView.setScaleType(ImageView.ScaleType.FIT_XY); // stretch to fit
-            imageView.setLayoutParams(new FrameLayout.LayoutParams(
-                    ViewGroup.LayoutParams.MATCH_PARENT,
-                    renderHeight
-            ));
-
-            // === DrawView ===
-            DrawView drawView = new DrawView(this);
-            drawView.setDrawSettingsProvider(this);
-            drawView.setDrawingEnabled(isDrawMode);
-            drawView.setLayoutParams(new FrameLayout.LayoutParams(
-                    ViewGroup.LayoutParams.MATCH_PARENT,
-                    ViewGroup.LayoutParams.MATCH_PARENT
-            ));
-
-            // === Touch Handling ===
-            zoomablePage.setOnTouchListener((v, event) -> {
-                if (blockAllActions) return false;
-
-                if (event.getAction() == MotionEvent.ACTION_DOWN) {
-                    OverlayElementView tappedOverlay = findOverlayAtPosition(zoomablePage, event.getX(), event.getY());
-
-                    // If an overlay was already selected
-                    if (selectedOverlay != null) {
-                        if (tappedOverlay != selectedOverlay) {
-                            deselectAllOverlays();
-                        }
-                        if (tappedOverlay != null && tappedOverlay != selectedOverlay) {
-                            onElementSelected(tappedOverlay);
-                        }
-                        return true;
-                    }
+            @Override
+            public void onDocumentFailed(Exception error) {
+                error.printStackTrace();
+                Toast.makeText(PdfEditorActivity.this, "Failed to render PDF", Toast.LENGTH_SHORT).show();
+            }
 
-                    // If we tap a new overlay
-                    if (tappedOverlay != null) {
+            @Override
+            public void onPageRendered(Bitmap renderedPage, int pageIndex, int quality) {
+                // The sharp render replaces the preview in place; FIT_XY stretches either to the page
+                PdfPageAdapter.PageViewHolder holder = boundPages.get(pageIndex);
+                if (holder != null) {
+                    holder.imageView.setImageBitmap(renderedPage);
+                }
+            }
+
+            @Override
+            public void onPageReleased(int pageIndex) {
+                PdfPageAdapter.PageViewHolder holder = boundPages.get(pageIndex);
+                if (holder != null) {
+                    holder.imageView.setImageDrawable(null);
+                    holder.tiledPageView.clearTiles();
+                }
+            }
+        });
+
+        pageAdapter = new PdfPageAdapter(this, renderEngine, pageBinder);
+        pageList.setAdapter(pageAdapter);
+        renderEngine.open(uri);
+    }
+
+    private void updateVisiblePages() {
+        if (renderEngine == null || pageAdapter == null || pageAdapter.getItemCount() == 0) return;
+
+        int first = pageLayoutManager.findFirstVisibleItemPosition();
+        int last = pageLayoutManager.findLastVisibleItemPosition();
+        if (first == RecyclerView.NO_POSITION) return;
+        renderEngine.onVisibleRangeChanged(first, last);
+
+        for (int i = first; i <= last; i++) {
+            PdfPageAdapter.PageViewHolder holder = boundPages.get(i);
+            if (holder != null) {
+                holder.tiledPageView.scheduleTileUpdate();
+            }
+        }
+    }
+
+    // Fills page views in from the document model as pages scroll in, and empties them as they leave
+    private final PdfPageAdapter.PageBinder pageBinder = new PdfPageAdapter.PageBinder() {
+        @Override
+        public void onPageViewCreated(PdfPageAdapter.PageViewHolder holder) {
+            setUpPageView(holder);
+        }
+
+        @Override
+        public void onPageBound(PdfPageAdapter.PageViewHolder holder) {
+            boundPages.put(holder.getPageIndex(), holder);
+            bindPageAnnotations(holder.getPageIndex());
+        }
+
+        @Override
+        public void onPageRecycled(PdfPageAdapter.PageViewHolder holder) {
+            int pageIndex = holder.getPageIndex();
+            if (boundPages.get(pageIndex) == holder) {
+                boundPages.remove(pageIndex);
+            }
+            removeOverlayViews(holder.page);
+            holder.drawView.clearAnnotationPage();
+        }
+    };
+
+    // Listeners and modes for a new page view; which page it shows is looked up when needed
+    private void setUpPageView(PdfPageAdapter.PageViewHolder holder) {
+        ZoomableFrameLayout zoomablePage = holder.page;
+        TiledPageView tiledPageView = holder.tiledPageView;
+        zoomablePage.setOnTransformChangedListener(layout -> tiledPageView.scheduleTileUpdate());
+
+        // === DrawView ===
+        DrawView drawView = holder.drawView;
+        drawView.setDrawSettingsProvider(this);
+        drawView.setDrawingEnabled(isDrawMode);
+        drawView.setEraseMode(activeEraseMode);
+        drawView.setOnStrokesChangedListener(view -> updateDirtyState(holder.getPageIndex()));
+        drawView.setOnEraseListener(new DrawView.OnEraseListener() {
+            @Override
+            public void onEraseStarted(DrawView view) {
+                annotationHistory.beginGroup();
+            }
+
+            @Override
+            public void onEraseFinished(DrawView view) {
+                annotationHistory.endGroup();
+            }
+        });
+        zoomablePage.addOnLayoutChangeListener((v, left, top, right, bottom, oldLeft, oldTop, oldRight, oldBottom) -> {
+            int pageIndex = holder.getPageIndex();
+            if (pageIndex != RecyclerView.NO_POSITION && fitAnnotationsToPage(pageIndex)) {
+                // Not from inside a layout pass
+                zoomablePage.post(() -> bindPageAnnotations(pageIndex));
+            }
+        });
+
+        // === Touch Handling ===
+        zoomablePage.setOnTouchListener((v, event) -> {
+            if (blockAllActions) return false;
+
+            if (event.getAction() == MotionEvent.ACTION_DOWN) {
+                OverlayElementView tappedOverlay = findOverlayAtPosition(zoomablePage, event.getX(), event.getY());
+
+                // If an overlay was already selected
+                if (selectedOverlay != null) {
+                    if (tappedOverlay != selectedOverlay) {
+                        deselectAllOverlays();
+                    }
+                    if (tappedOverlay != null && tappedOverlay != selectedOverlay) {
                         onElementSelected(tappedOverlay);
-                        return true;
                     }
+                    return true;
+                }
 
-                    // Tap on empty space
-                    if (tappedOverlay == null) {
-                        if (selectedTextMode && !isDrawMode) {
-                            addTextToPage(zoomablePage, event.getX(), event.getY());
-                            return true;
-                        }
-                        if (selectedSignatureBitmap != null && !isDrawMode) {
-                            addSignatureToPage(zoomablePage, event.getX(), event.getY());
-                            return true;
-                        }
-                        if (isCheckmarkSelected && !isDrawMode) {
-                            addCheckmarkToPage(zoomablePage, event.getX(), event.getY());
-                            return true;
-                        }
-                        if (selectedShapeType != null && !isDrawMode) {
-                            addShapeToPage(zoomablePage, event.getX(), event.getY(), selectedShapeType);
-                            return true;
-                        }
-
-                        deselectAllOverlays(); // Nothing selected or inserted
-                        return true;
-                    }
+                // If we tap a new overlay
+                if (tappedOverlay != null) {
+                    onElementSelected(tappedOverlay);
+                    return true;
                 }
-                return false;
-            });
 
-            zoomablePage.addView(imageView);
-            zoomablePage.addView(drawView);
-            zoomablePage.setClipChildren(true);
-            zoomablePage.setClipToPadding(true);
-            pageContainer.addView(zoomablePage);
+                // Tap on empty space
+                if (tappedOverlay == null) {
+                    if (selectedTextMode && !isDrawMode) {
+                        addTextToPage(zoomablePage, event.getX(), event.getY());
+                        return true;
+                    }
+                    if (selectedSignatureBitmap != null && !isDrawMode) {
+                        addSignatureToPage(zoomablePage, event.getX(), event.getY());
+                        return true;
+                    }
+                    if (isCheckmarkSelected && !isDrawMode) {
+                        addCheckmarkToPage(zoomablePage, event.getX(), event.getY());
+                        return true;
+                    }
+                    if (selectedShapeType != null && !isDrawMode) {
+                        addShapeToPage(zoomablePage, event.getX(), event.getY(), selectedShapeType);
+                        return true;
+                    }
 
-            zoomablePages.add(zoomablePage);
-            drawViews.add(drawView);
+                    deselectAllOverlays(); // Nothing selected or inserted
+                    return true;
+                }
+            }
+            return false;
         });
+
+        drawViews.add(drawView);
     }
 
     // Helper methods used in the main method
@@ -467,7 +652,7 @@ public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvi
                 location[1] + view.getHeight());
 
         int[] containerLocation = new int[2];
-        pageContainer.getLocationOnScreen(containerLocation);
+        pageList.getLocationOnScreen(containerLocation);
         float globalX = x + containerLocation[0];
         float globalY = y + containerLocation[1];
 
@@ -487,7 +672,14 @@ public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvi
         );
 
         // Create signature view with scaled bitmap
-        SignatureElementView signatureView = new SignatureElementView(this, scaledBitmap);
+        int imageNumber = signatureImages.size() + 1;
+        while (signatureImages.containsKey("signature-" + imageNumber)) {
+            imageNumber++;
+        }
+        String imageKey = "signature-" + imageNumber;
+        signatureImages.put(imageKey, scaledBitmap);
+        SignatureModel model = new SignatureModel(imageKey, initialWidth, initialHeight);
+        SignatureElementView signatureView = new SignatureElementView(this, model, scaledBitmap);
 
         // Store original bitmap for later resizing if needed
         signatureView.setTag(selectedSignatureBitmap);
@@ -502,16 +694,13 @@ public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvi
 
         signatureView.setLayoutParams(params);
         parent.addView(signatureView);
-        overlayElements.add(signatureView);
+        if (!addOverlayElement(parent, signatureView)) return;
         onElementSelected(signatureView);
     }
-    private void cleanOrphanOverlays() {
-        Iterator<OverlayElementView> iterator = overlayElements.iterator();
-        while (iterator.hasNext()) {
-            OverlayElementView v = iterator.next();
-            if (v.getParent() == null) {
-                iterator.remove();
-            }
+    // The model is changed by then; the page's views are rebuilt to match
+    private void onHistoryApplied(AnnotationPage page) {
+        if (page != null) {
+            bindPageAnnotations(page.pageIndex);
         }
     }
 
@@ -548,6 +737,8 @@ public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvi
 
     //signature overlay methods
     private OverlayElementView selectedOverlay = null;
+    private final Matrix touchMatrix = new Matrix();
+    private final float[] touchPoint = new float[2];
 
     public void onElementSelected(OverlayElementView element) {
         if (selectedOverlay != null && selectedOverlay != element) {
@@ -566,30 +757,172 @@ public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvi
         hideElementToolbar();
     }
     public void removeOverlayElement(OverlayElementView element) {
-        for (ZoomableFrameLayout page : zoomablePages) {
-            page.removeView(element);
+        if (element.getParent() instanceof ViewGroup) {
+            ((ViewGroup) element.getParent()).removeView(element);
         }
-        overlayElements.remove(element);
+        overlayViews.remove(element.getModel());
         hideElementToolbar();
+        removeFromModel(element);
+    }
+
+    // The view must already be in the page. False if the page view was recycled in the meantime,
+    // in which case the element is dropped again.
+    private boolean addOverlayElement(ViewGroup page, OverlayElementView element) {
+        int pageIndex = pageIndexOf(page);
+        if (pageIndex == RecyclerView.NO_POSITION) {
+            page.removeView(element);
+            return false;
+        }
+        overlayViews.put(element.getModel(), element);
+        annotationDocument.getPage(pageIndex).addElement(element.getModel());
+        onOverlayChanged(element);
+        return true;
+    }
+
+    // Found through the model, since the view may already be out of its page
+    private void removeFromModel(OverlayElementView element) {
+        AnnotationPage page = annotationDocument.findPageOf(element.getModel());
+        if (page != null) {
+            page.removeElement(element.getModel());
+            updateDirtyState(page.pageIndex);
+        }
+    }
+
+    private void restoreAnnotations(AnnotationDocument document, Map<String, Bitmap> images) {
+        // Anything drawn while the file was being read is newer; keep that instead
+        if (!annotationDocument.isEmpty()) return;
+
+        annotationHistory.detach();
+        annotationDocument.removeChangeListener(annotationJournal);
+        annotationDocument = document;
+        annotationDocument.addChangeListener(annotationJournal);
+        annotationHistory = new AnnotationHistory(annotationDocument);
+        signatureImages.putAll(images);
+        for (AnnotationPage page : annotationDocument.getPages()) {
+            updateDirtyState(page.pageIndex);
+        }
+        for (int k = 0; k < boundPages.size(); k++) {
+            bindPageAnnotations(boundPages.keyAt(k));
+        }
+    }
+
+    // Rebuilds the page's ink and overlay views from the model, if it has a view; one that
+    // hasn't is bound once it scrolls in
+    private void bindPageAnnotations(int pageIndex) {
+        updateDirtyState(pageIndex);
+        PdfPageAdapter.PageViewHolder holder = boundPages.get(pageIndex);
+        if (holder == null) return;
+
+        ZoomableFrameLayout page = holder.page;
+        fitAnnotationsToPage(pageIndex);
+        removeOverlayViews(page);
+
+        AnnotationPage annotationPage = annotationDocument.getPage(pageIndex);
+        holder.drawView.setAnnotationPage(annotationPage);
+        for (ElementModel element : annotationPage.getElements()) {
+            OverlayElementView view = createOverlayView(element);
+            if (view == null) continue;
+            view.applyModel();
+            page.addView(view);
+            overlayViews.put(element, view);
+        }
     }
-    private OverlayElementView findOverlayAtPosition(ViewGroup parent, float x, float y) {
-        int[] containerLocation = new int[2];
-        parent.getLocationOnScreen(containerLocation);
-        float globalX = x + containerLocation[0];
-        float globalY = y + containerLocation[1];
 
-        for (int i = parent.getChildCount() - 1; i >= 0; i--) { // Topmost view first
-            View child = parent.getChildAt(i);
+    private void removeOverlayViews(ZoomableFrameLayout page) {
+        for (int i = page.getChildCount() - 1; i >= 0; i--) {
+            View child = page.getChildAt(i);
             if (child instanceof OverlayElementView) {
-                OverlayElementView overlay = (OverlayElementView) child;
-                if (overlay.hitTest(globalX, globalY)) {
-                    return overlay;
+                if (child == selectedOverlay) {
+                    deselectAllOverlays();
                 }
+                page.removeViewAt(i);
+                overlayViews.remove(((OverlayElementView) child).getModel());
             }
         }
+    }
+
+    // NO_POSITION if the view isn't showing a page
+    private int pageIndexOf(View page) {
+        RecyclerView.ViewHolder holder = pageList.findContainingViewHolder(page);
+        return holder instanceof PdfPageAdapter.PageViewHolder
+                ? ((PdfPageAdapter.PageViewHolder) holder).getPageIndex() : RecyclerView.NO_POSITION;
+    }
+
+    private OverlayElementView createOverlayView(ElementModel element) {
+        if (element instanceof ShapeModel) {
+            return new ShapeElementView(this, (ShapeModel) element);
+        }
+        if (element instanceof TextModel) {
+            return new TextElementView(this, (TextModel) element);
+        }
+        if (element instanceof CheckmarkModel) {
+            return new CheckmarkElementView(this, (CheckmarkModel) element);
+        }
+        if (element instanceof SignatureModel) {
+            Bitmap bitmap = signatureImages.get(((SignatureModel) element).imageKey);
+            return bitmap != null ? new SignatureElementView(this, (SignatureModel) element, bitmap) : null;
+        }
         return null;
     }
 
+    // Annotations are kept in the page view's pixels. Ones made at another width, e.g. in the
+    // other orientation, are scaled to fit. Returns whether anything had to move.
+    private boolean fitAnnotationsToPage(int pageIndex) {
+        PdfPageAdapter.PageViewHolder holder = boundPages.get(pageIndex);
+        if (holder == null) return false;
+        ZoomableFrameLayout page = holder.page;
+        AnnotationPage annotationPage = annotationDocument.getPage(pageIndex);
+        int width = page.getWidth();
+        if (width == 0 || width == annotationPage.getWidth()) return false;
+
+        boolean rescale = annotationPage.getWidth() > 0 && !annotationPage.isEmpty();
+        if (rescale) {
+            annotationPage.scaleContent((float) width / annotationPage.getWidth());
+        }
+        annotationPage.setSize(width, page.getHeight());
+        if (rescale) {
+            // Journaled edits are in the old size; store the rescaled page so none are replayed over it
+            storeAnnotationSnapshot();
+            // Nor can old states be undone back into it
+            annotationHistory.clear();
+        }
+        return rescale;
+    }
+
+    /** Called when an overlay is added, or after it is moved, resized, rotated or restyled. */
+    public void onOverlayChanged(OverlayElementView element) {
+        AnnotationPage page = annotationDocument.findPageOf(element.getModel());
+        if (page != null) {
+            page.elementChanged(element.getModel());
+            updateDirtyState(page.pageIndex);
+        }
+    }
+
+    // Re-checks one page rather than just setting its bit, so a page whose edits were all
+    // undone or deleted goes back to being saved untouched
+    private void updateDirtyState(int pageIndex) {
+        if (pageIndex < 0) return;
+        dirtyPages.set(pageIndex, pageHasEdits(pageIndex));
+    }
+
+    private boolean pageHasEdits(int pageIndex) {
+        AnnotationPage page = annotationDocument.findPage(pageIndex);
+        return page != null && !page.isEmpty();
+    }
+    // Looked up in the page's spatial index rather than by asking every overlay view
+    private OverlayElementView findOverlayAtPosition(ZoomableFrameLayout page, float x, float y) {
+        AnnotationPage annotationPage = annotationDocument.findPage(pageIndexOf(page));
+        if (annotationPage == null) return null;
+
+        // The touch is in the zoomed page; the model isn't
+        page.getTransformationMatrix().invert(touchMatrix);
+        touchPoint[0] = x;
+        touchPoint[1] = y;
+        touchMatrix.mapPoints(touchPoint);
+        ElementModel element = annotationPage.findElementAt(touchPoint[0], touchPoint[1]);
+        return element != null ? overlayViews.get(element) : null;
+    }
+
 
     public void showShapeContextMenu(ShapeElementView shapeView) {
         PopupMenu popup = new PopupMenu(this, shapeView); // or use an anchor view
@@ -809,7 +1142,7 @@ public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvi
         checkmark.setY(y - size / 2f);
 
         page.addView(checkmark);
-        overlayElements.add(checkmark); // For undo/selection tracking
+        if (!addOverlayElement(page, checkmark)) return; // For undo/selection tracking
         onElementSelected(checkmark);
     }
 
@@ -830,7 +1163,7 @@ public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvi
         // Offset to center the touch point
         textElement.setX(x - initialWidth / 2f);
         textElement.setY(y - initialHeight / 2f);
-        overlayElements.add(textElement);
+        if (!addOverlayElement(page, textElement)) return;
         textElement.setSelectedState(true);
         onElementSelected(textElement);
         if(!selectedDateMode)
@@ -923,134 +1256,16 @@ public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvi
     }
 
 
-    private void savePdfWithOverlayss() {
-        // Create a temporary directory to store processed pages
-        File outputDir = new File(getCacheDir(), "pdf_export");
-        if (!outputDir.exists()) {
-            outputDir.mkdirs();
-        }
-
-        // Create a progress dialog
-        ProgressDialog progressDialog = new ProgressDialog(this);
-        progressDialog.setMessage("Saving PDF...");
-        progressDialog.setCancelable(false);
-        progressDialog.show();
-
-        // Process in background thread
-        new AsyncTask<Void, Void, File>() {
-            @Override
-            protected File doInBackground(Void... voids) {
-                try {
-                    // Create a new PDF document
-                    PdfDocument document = new PdfDocument();
-                    DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
-
-                    // Process each page
-                    for (int i = 0; i < zoomablePages.size(); i++) {
-                        ZoomableFrameLayout pageLayout = zoomablePages.get(i);
-                        DrawView drawView = drawViews.get(i);
-
-                        // Get the original PDF page size
-                        ImageView pdfImageView = (ImageView) pageLayout.getChildAt(0);
-                        Bitmap originalBitmap = ((BitmapDrawable) pdfImageView.getDrawable()).getBitmap();
-                        int pageWidth = originalBitmap.getWidth();
-                        int pageHeight = originalBitmap.getHeight();
-
-                        // Create a bitmap for the combined content
-                        Bitmap combinedBitmap = Bitmap.createBitmap(pageWidth, pageHeight, Bitmap.Config.ARGB_8888);
-                        Canvas canvas = new Canvas(combinedBitmap);
-
-                        // 1. Draw the original PDF content
-                        canvas.drawBitmap(originalBitmap, 0, 0, null);
-
-                        // 2. Draw the drawing layer
-                        Bitmap drawingBitmap = drawView.getBitmap();
-                        if (drawingBitmap != null) {
-                            // Scale drawing to match PDF size
-                            Matrix matrix = new Matrix();
-                            float scaleX = (float) pageWidth / drawView.getWidth();
-                            float scaleY = (float) pageHeight / drawView.getHeight();
-                            matrix.postScale(scaleX, scaleY);
-                            canvas.drawBitmap(drawingBitmap, matrix, null);
-                        }
-
-                        // 3. Draw all overlay elements
-                        for (int j = 0; j < pageLayout.getChildCount(); j++) {
-                            View child = pageLayout.getChildAt(j);
-                            if (child instanceof OverlayElementView) {
-                                OverlayElementView overlay = (OverlayElementView) child;
-                                Bitmap overlayBitmap = overlay.getBitmap();
-
-                                if (overlayBitmap != null) {
-                                    // Calculate position relative to PDF size
-                                    float left = overlay.getX() * ((float) pageWidth / pageLayout.getWidth());
-                                    float top = overlay.getY() * ((float) pageHeight / pageLayout.getHeight());
-                                    float width = overlay.getWidth() * ((float) pageWidth / pageLayout.getWidth());
-                                    float height = overlay.getHeight() * ((float) pageHeight / pageLayout.getHeight());
-
-                                    // Scale the overlay bitmap
-                                    Bitmap scaledOverlay = Bitmap.createScaledBitmap(overlayBitmap, (int) width, (int) height, true);
-                                    canvas.drawBitmap(scaledOverlay, left, top, null);
-                                }
-                            }
-                        }
-
-                        // Create a PDF page
-                        PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(pageWidth, pageHeight, i).create();
-                        PdfDocument.Page page = document.startPage(pageInfo);
-
-                        // Draw the combined bitmap to the PDF page
-                        page.getCanvas().drawBitmap(combinedBitmap, 0, 0, null);
-                        document.finishPage(page);
-
-                        // Recycle bitmaps
-                        combinedBitmap.recycle();
-                    }
-
-                    // Save the document to a file
-                    File outputFile = new File(outputDir, "annotated_" + System.currentTimeMillis() + ".pdf");
-                    document.writeTo(new FileOutputStream(outputFile));
-                    document.close();
-
-                    return outputFile;
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    return null;
-                }
-            }
-
-            @Override
-            protected void onPostExecute(File result) {
-                if (!isFinishing() && !isDestroyed()) {
-                    progressDialog.dismiss();
-                }
-                if (result != null) {
-                    // Share the saved PDF
-                    Intent shareIntent = new Intent(Intent.ACTION_SEND);
-                    shareIntent.setType("application/pdf");
-                    Uri uri = FileProvider.getUriForFile(PdfEditorActivity.this,
-                            getPackageName() + ".fileprovider", result);
-                    shareIntent.putExtra(Intent.EXTRA_STREAM, uri);
-                    shareIntent.addFlags(Intent.FLAG_GRANT_READ_URI_PERMISSION);
-
-                    startActivity(Intent.createChooser(shareIntent, "Share PDF"));
-                } else {
-                    Toast.makeText(PdfEditorActivity.this, "Failed to save PDF", Toast.LENGTH_SHORT).show();
-                }
-            }
-        }.execute();
-    }
-
     private void savePdfWithOverlays() {
         if(hasChanges()){
             AlertDialog dialog = new MaterialAlertDialogBuilder(this, R.style.ThemeOverlay_IOSLikeDialog)
                     .setTitle("Save changes?")
                     .setMessage("Do you want to save your edits before leaving?")
-                    .setPositiveButton("Save", (d, which) -> {
-                        savePDF();
+                    .setPositiveButton("Save", (d, which) -> savePDF())
+                    .setNegativeButton("Discard", (d, which) -> {
+                        forgetStoredAnnotations();
                         finish();
                     })
-                    .setNegativeButton("Discard", (d, which) -> finish())
                     .setNeutralButton("Cancel", (d, which) -> d.dismiss())
                     .create();
             if (dialog.getWindow() != null) {
@@ -1058,6 +1273,8 @@ public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvi
             }
             dialog.show();
 
+        } else {
+            finish();
         }
     }
 
@@ -1096,132 +1313,107 @@ public class PdfEditorActivity extends BaseActivity implements DrawSettingsProvi
     }
 
     private void savePDF(){
-        ProgressDialog progressDialog = new ProgressDialog(this);
-        progressDialog.setMessage("Saving PDF...");
-        progressDialog.setCancelable(false);
-        progressDialog.show();
-
-        new AsyncTask<Void, Void, File>() {
-            @Override
-            protected File doInBackground(Void... voids) {
-                try {
-                    File downloadsDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
-                    if (!downloadsDir.exists()) {
-                        downloadsDir.mkdirs();
-                    }
-
-//                        File outputFile = new File(downloadsDir, "Pdfly_" + System.currentTimeMillis() + ".pdf");
-                    File outputFile = new File(downloadsDir, "Pdfly_" + name + ".pdf");
-
-                    PdfDocument document = new PdfDocument();
-
-                    for (int i = 0; i < zoomablePages.size(); i++) {
-                        ZoomableFrameLayout pageLayout = zoomablePages.get(i);
-                        DrawView drawView = drawViews.get(i);
-
-                        ImageView pdfImageView = (ImageView) pageLayout.getChildAt(0);
-                        Bitmap originalBitmap = ((BitmapDrawable) pdfImageView.getDrawable()).getBitmap();
-                        int pageWidth = originalBitmap.getWidth();
-                        int pageHeight = originalBitmap.getHeight();
-
-                        Bitmap combinedBitmap = Bitmap.createBitmap(pageWidth, pageHeight, Bitmap.Config.ARGB_8888);
-                        Canvas canvas = new Canvas(combinedBitmap);
-
-                        canvas.drawBitmap(originalBitmap, 0, 0, null);
-
-                        // Scale drawing layer
-                        Bitmap drawingBitmap = drawView.getBitmap();
-                        if (drawingBitmap != null) {
-                            Matrix matrix = new Matrix();
-                            float scaleX = (float) pageWidth / drawView.getWidth();
-                            float scaleY = (float) pageHeight / drawView.getHeight();
-                            matrix.postScale(scaleX, scaleY);
-                            canvas.drawBitmap(drawingBitmap, matrix, null);
-                        }
-
-                        // Draw overlays
-                        for (int j = 0; j < pageLayout.getChildCount(); j++) {
-                            View child = pageLayout.getChildAt(j);
-                            if (child instanceof OverlayElementView) {
-                                OverlayElementView overlay = (OverlayElementView) child;
-
-                                float scaleX = (float) pageWidth / pageLayout.getWidth();
-                                float scaleY = (float) pageHeight / pageLayout.getHeight();
-
-                                float visualScaleX = overlay.getScaleX();
-                                float visualScaleY = overlay.getScaleY();
-
-                                int originalWidth = overlay.getWidth();
-                                int originalHeight = overlay.getHeight();
-
-                                Bitmap renderedBitmap = overlay.getBitmap();
-
-                                float adjustedX = overlay.getX() + (originalWidth - (originalWidth * visualScaleX)) / 2f;
-                                float adjustedY = overlay.getY() + (originalHeight - (originalHeight * visualScaleY)) / 2f;
-
-                                // Step 6: Scale position to PDF canvas
-                                float pdfX = adjustedX * scaleX;
-                                float pdfY = adjustedY * scaleY;
-
-                                Matrix drawMatrix = new Matrix();
-                                drawMatrix.postScale(scaleX, scaleY); // match PDF scale
-                                drawMatrix.postTranslate(pdfX, pdfY); // move to correct PDF position
+        // Copy the annotations now; the save job must not read the model while it is
+        // being edited. Clean pages are left out and end up in the output exactly as they
+        // are in the source.
+        List<PageAnnotations> annotations = new ArrayList<>();
+        for (int i = dirtyPages.nextSetBit(0); i >= 0; i = dirtyPages.nextSetBit(i + 1)) {
+            annotations.add(PageAnnotations.capture(this, annotationDocument.getPage(i), signatureImages));
+        }
 
-                                canvas.drawBitmap(renderedBitmap, drawMatrix, null);
-                                renderedBitmap.recycle();
-                            }
-                        }
+        File downloadsDir = Environment.getExternalStoragePublicDirectory(Environment.DIRECTORY_DOWNLOADS);
+        if (!downloadsDir.exists()) {
+            downloadsDir.mkdirs();
+        }
+//        File outputFile = new File(downloadsDir, "Pdfly_" + System.currentTimeMillis() + ".pdf");
+        File outputFile = new File(downloadsDir, "Pdfly_" + name + ".pdf");
+
+        saveProgressDialog = new ProgressDialog(this);
+        saveProgressDialog.setMessage("Saving PDF...");
+        saveProgressDialog.setProgressStyle(ProgressDialog.STYLE_HORIZONTAL);
+        saveProgressDialog.setCancelable(false);
+        saveProgressDialog.setButton(DialogInterface.BUTTON_NEGATIVE, "Cancel",
+                (d, which) -> SaveJobManager.getInstance(this).cancel(saveJobId));
+        // The save carries on without the editor
+        saveProgressDialog.setButton(DialogInterface.BUTTON_NEUTRAL, "Hide", (d, which) -> finish());
+        saveProgressDialog.show();
+
+        SaveJobManager saveJobManager = SaveJobManager.getInstance(this);
+        saveJobManager.removeListener(saveListener);
+        saveJobManager.addListener(saveListener);
+        saveJobId = saveJobManager.save(pdfUri, annotations, outputFile, ExportProfile.BALANCED);
+    }
 
-                        PdfDocument.PageInfo pageInfo = new PdfDocument.PageInfo.Builder(pageWidth, pageHeight, i).create();
-                        PdfDocument.Page page = document.startPage(pageInfo);
-                        page.getCanvas().drawBitmap(combinedBitmap, 0, 0, null);
-                        document.finishPage(page);
+    private final SaveJobManager.Listener saveListener = new SaveJobManager.Listener() {
+        @Override
+        public void onSaveProgress(long jobId, int done, int total) {
+            if (jobId != saveJobId || saveProgressDialog == null) return;
+            saveProgressDialog.setMax(total);
+            saveProgressDialog.setProgress(done);
+        }
 
-                        combinedBitmap.recycle();
-                    }
+        @Override
+        public void onSaveFinished(long jobId, File output) {
+            if (jobId != saveJobId) return;
+            dismissSaveProgress();
+            if (output != null) {
+                // The save job has already forgotten the stored copy; just don't write it again
+                storeAnnotations = false;
+                finish();
+            }
+        }
 
-                    FileOutputStream fos = new FileOutputStream(outputFile);
-                    document.writeTo(fos);
-                    document.close();
-                    fos.close();
+        @Override
+        public void onSaveCancelled(long jobId) {
+            if (jobId != saveJobId) return;
+            // Stay in the editor so nothing is lost
+            dismissSaveProgress();
+        }
+    };
 
-                    return outputFile;
+    // The edits are in a PDF now, or thrown away on purpose; don't bring them back next time
+    private void forgetStoredAnnotations() {
+        storeAnnotations = false;
+        AnnotationStore.getInstance(this).delete(pdfUri);
+    }
 
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    return null;
-                }
-            }
+    @Override
+    protected void onPause() {
+        super.onPause();
+        // Cheap enough to do every time; the process may not come back from the background
+        storeAnnotationSnapshot();
+    }
 
-            @Override
-            protected void onPostExecute(File result) {
-                if (!isFinishing() && !isDestroyed()) {
-                    progressDialog.dismiss();
-                }
+    // Also starts a new journal, since everything in the old one is in the stored file
+    private void storeAnnotationSnapshot() {
+        if (isJournaling()) {
+            AnnotationStore.getInstance(this).save(pdfUri, annotationDocument, signatureImages);
+        }
+    }
 
-                if (result != null) {
-                    Toast.makeText(PdfEditorActivity.this, "Saved to Downloads", Toast.LENGTH_SHORT).show();
-                    Intent scanIntent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
-                    scanIntent.setData(Uri.fromFile(result));
-                    sendBroadcast(scanIntent);
-                } else {
-                    Toast.makeText(PdfEditorActivity.this, "Failed to save PDF", Toast.LENGTH_SHORT).show();
-                }
-            }
-        }.execute();
+    private boolean isJournaling() {
+        return storeAnnotations && storedAnnotationsLoaded && pdfUri != null;
     }
 
-    private boolean hasChanges() {
-        // Check overlays
-        if (!overlayElements.isEmpty()) {
-            return true;
+    private void dismissSaveProgress() {
+        if (saveProgressDialog != null) {
+            saveProgressDialog.dismiss();
+            saveProgressDialog = null;
         }
+    }
 
-        if(!drawViews.isEmpty()){
-            return true;
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        SaveJobManager.getInstance(this).removeListener(saveListener);
+        dismissSaveProgress();
+        if (renderEngine != null) {
+            renderEngine.close();
         }
+    }
 
-        return false;
+    private boolean hasChanges() {
+        return !dirtyPages.isEmpty();
     }
 
 
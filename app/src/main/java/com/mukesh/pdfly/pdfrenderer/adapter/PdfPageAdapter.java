@@ -0,0 +1,155 @@
+package com.mukesh.pdfly.pdfrenderer.adapter;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.util.TypedValue;
+import android.view.ViewGroup;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.mukesh.pdfly.pdfrenderer.helper.PageRenderEngine;
+import com.mukesh.pdfly.pdfrenderer.views.DrawView;
+import com.mukesh.pdfly.pdfrenderer.views.TiledPageView;
+import com.mukesh.pdfly.pdfrenderer.views.ZoomableFrameLayout;
+
+/**
+ * The pages of the open document as a recycled list. Only the pages on screen, and the few the
+ * list keeps either side, have views; each is filled in when its page scrolls in and emptied
+ * when it scrolls out, so the number of page views depends on the screen, not the document.
+ *
+ * The page bitmap comes from the {@link PageRenderEngine}; ink, overlays and touch handling
+ * are left to the {@link PageBinder}.
+ */
+public class PdfPageAdapter extends RecyclerView.Adapter<PdfPageAdapter.PageViewHolder> {
+
+    public interface PageBinder {
+        // Once per page view, for what doesn't depend on the page it shows
+        void onPageViewCreated(PageViewHolder holder);
+
+        void onPageBound(PageViewHolder holder);
+
+        // Before the view is emptied and handed to another page
+        void onPageRecycled(PageViewHolder holder);
+    }
+
+    private static final int PAGE_MARGIN_DP = 12;
+
+    private final Context context;
+    private final PageRenderEngine renderEngine;
+    private final PageBinder binder;
+    private int pageCount;
+
+    public PdfPageAdapter(Context context, PageRenderEngine renderEngine, PageBinder binder) {
+        this.context = context;
+        this.renderEngine = renderEngine;
+        this.binder = binder;
+    }
+
+    public void setPageCount(int pageCount) {
+        this.pageCount = pageCount;
+        notifyDataSetChanged();
+    }
+
+    @NonNull
+    @Override
+    public PageViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        int marginPx = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, PAGE_MARGIN_DP,
+                context.getResources().getDisplayMetrics());
+
+        ZoomableFrameLayout page = new ZoomableFrameLayout(context);
+        // The height is each page's own, set when it is bound
+        RecyclerView.LayoutParams pageLayoutParams = new RecyclerView.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT,
+                0
+        );
+        pageLayoutParams.setMargins(0, marginPx, 0, marginPx);
+        page.setLayoutParams(pageLayoutParams);
+        page.setBackgroundColor(Color.WHITE);
+
+        ImageView imageView = new ImageView(context);
+        imageView.setScaleType(ImageView.ScaleType.FIT_XY); // stretch to fit
+        imageView.setLayoutParams(new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT
+        ));
+
+        // Sharp tiles over the base render while zoomed in
+        TiledPageView tiledPageView = new TiledPageView(context);
+        tiledPageView.setLayoutParams(new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT
+        ));
+
+        DrawView drawView = new DrawView(context);
+        drawView.setLayoutParams(new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT
+        ));
+
+        page.addView(imageView);
+        page.addView(tiledPageView);
+        page.addView(drawView);
+        page.setClipChildren(true);
+        page.setClipToPadding(true);
+
+        PageViewHolder holder = new PageViewHolder(page, imageView, tiledPageView, drawView);
+        binder.onPageViewCreated(holder);
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull PageViewHolder holder, int position) {
+        holder.pageIndex = position;
+
+        // Pages of one height, the usual case, don't cost a layout pass each
+        ViewGroup.LayoutParams params = holder.page.getLayoutParams();
+        int height = renderEngine.getRenderHeight(position);
+        if (params.height != height) {
+            params.height = height;
+            holder.page.setLayoutParams(params);
+        }
+        // Null until the engine has rendered it; onPageRendered fills it in then
+        holder.imageView.setImageBitmap(renderEngine.getPageBitmap(position));
+        holder.tiledPageView.bind(renderEngine, position);
+        binder.onPageBound(holder);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull PageViewHolder holder) {
+        binder.onPageRecycled(holder);
+        holder.imageView.setImageDrawable(null);
+        holder.tiledPageView.clearTiles();
+        holder.page.resetZoom();
+        holder.pageIndex = RecyclerView.NO_POSITION;
+    }
+
+    @Override
+    public int getItemCount() {
+        return pageCount;
+    }
+
+    public static class PageViewHolder extends RecyclerView.ViewHolder {
+
+        public final ZoomableFrameLayout page;
+        public final ImageView imageView;
+        public final TiledPageView tiledPageView;
+        public final DrawView drawView;
+        private int pageIndex = RecyclerView.NO_POSITION;
+
+        PageViewHolder(ZoomableFrameLayout page, ImageView imageView, TiledPageView tiledPageView, DrawView drawView) {
+            super(page);
+            this.page = page;
+            this.imageView = imageView;
+            this.tiledPageView = tiledPageView;
+            this.drawView = drawView;
+        }
+
+        // NO_POSITION while it shows no page
+        public int getPageIndex() {
+            return pageIndex;
+        }
+    }
+}
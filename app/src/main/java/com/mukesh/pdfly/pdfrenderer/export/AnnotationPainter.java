@@ -0,0 +1,145 @@
+package com.mukesh.pdfly.pdfrenderer.export;
+
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+
+/**
+ * Draws captured {@link PageAnnotations} onto a canvas the way the editor shows them. Only
+ * reads the annotations, so several threads can paint different pages at once.
+ */
+public class AnnotationPainter {
+
+    private final Paint strokePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint fillPaint = new Paint();
+    private final Paint iconPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint imagePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final Path path = new Path();
+
+    public AnnotationPainter() {
+        strokePaint.setStyle(Paint.Style.STROKE);
+        strokePaint.setStrokeCap(Paint.Cap.ROUND);
+        strokePaint.setStrokeJoin(Paint.Join.ROUND);
+    }
+
+    /** Paints onto a canvas {@code width} by {@code height} pixels, scaled from the page view's size. */
+    public void paint(Canvas canvas, PageAnnotations annotations, int width, int height) {
+        canvas.save();
+        canvas.scale((float) width / annotations.viewWidth, (float) height / annotations.viewHeight);
+
+        for (PageAnnotations.Stroke stroke : annotations.strokes) {
+            paintStroke(canvas, stroke);
+        }
+        for (PageAnnotations.Overlay overlay : annotations.overlays) {
+            canvas.save();
+            canvas.concat(overlay.transform);
+            if (overlay instanceof PageAnnotations.Shape) {
+                paintShape(canvas, (PageAnnotations.Shape) overlay);
+            } else if (overlay instanceof PageAnnotations.Text) {
+                paintText(canvas, (PageAnnotations.Text) overlay);
+            } else if (overlay instanceof PageAnnotations.Icon) {
+                paintIcon(canvas, (PageAnnotations.Icon) overlay);
+            } else if (overlay instanceof PageAnnotations.Image) {
+                PageAnnotations.Image image = (PageAnnotations.Image) overlay;
+                canvas.drawBitmap(image.bitmap, null, image.bounds, imagePaint);
+            }
+            canvas.restore();
+        }
+        canvas.restore();
+    }
+
+    private void paintStroke(Canvas canvas, PageAnnotations.Stroke stroke) {
+        float[] curves = stroke.curves;
+        strokePaint.setColor(stroke.color);
+        strokePaint.setStrokeWidth(stroke.width);
+        if (curves.length == 0) {
+            // A single tap still leaves a dot
+            canvas.drawPoint(stroke.startX, stroke.startY, strokePaint);
+            return;
+        }
+
+        path.rewind();
+        path.moveTo(stroke.startX, stroke.startY);
+        for (int i = 0; i + 5 < curves.length; i += 6) {
+            path.cubicTo(curves[i], curves[i + 1], curves[i + 2], curves[i + 3], curves[i + 4], curves[i + 5]);
+        }
+        canvas.drawPath(path, strokePaint);
+    }
+
+    private void paintShape(Canvas canvas, PageAnnotations.Shape shape) {
+        RectF r = shape.bounds;
+        strokePaint.setColor(shape.color);
+        strokePaint.setStrokeWidth(shape.strokeWidth);
+
+        switch (shape.type) {
+            case RECTANGLE:
+                canvas.drawRect(r, strokePaint);
+                break;
+            case CIRCLE:
+                float radius = Math.min(r.width(), r.height()) / 2f;
+                canvas.drawCircle(r.left + radius, r.top + radius, radius, strokePaint);
+                break;
+            case LINE:
+                canvas.drawLine(r.left, r.bottom, r.right, r.top, strokePaint);
+                break;
+        }
+    }
+
+    private void paintIcon(Canvas canvas, PageAnnotations.Icon overlay) {
+        VectorIcon icon = overlay.icon;
+        RectF r = overlay.bounds;
+        canvas.save();
+        canvas.translate(r.left, r.top);
+        canvas.scale(r.width() / icon.viewportWidth, r.height() / icon.viewportHeight);
+        for (VectorIcon.FilledPath filled : icon.paths) {
+            float[] p = filled.points;
+            int i = 0;
+            path.rewind();
+            for (byte verb : filled.verbs) {
+                switch (verb) {
+                    case VectorIcon.MOVE:
+                        path.moveTo(p[i], p[i + 1]);
+                        i += 2;
+                        break;
+                    case VectorIcon.LINE:
+                        path.lineTo(p[i], p[i + 1]);
+                        i += 2;
+                        break;
+                    case VectorIcon.CUBIC:
+                        path.cubicTo(p[i], p[i + 1], p[i + 2], p[i + 3], p[i + 4], p[i + 5]);
+                        i += 6;
+                        break;
+                    case VectorIcon.CLOSE:
+                        path.close();
+                        break;
+                }
+            }
+            iconPaint.setColor(filled.color);
+            canvas.drawPath(path, iconPaint);
+        }
+        canvas.restore();
+    }
+
+    private void paintText(Canvas canvas, PageAnnotations.Text text) {
+        if (text.backgroundColor != 0) {
+            fillPaint.setColor(text.backgroundColor);
+            canvas.drawRect(text.bounds, fillPaint);
+        }
+
+        textPaint.setTextSize(text.textSizePx);
+        textPaint.setColor(text.color);
+        textPaint.setTypeface(text.bold ? Typeface.DEFAULT_BOLD : Typeface.DEFAULT);
+        textPaint.setUnderlineText(text.underline);
+        textPaint.setStrikeThruText(text.strikethrough);
+
+        for (PageAnnotations.TextLine line : text.lines) {
+            textPaint.setTextScaleX(1f);
+            float naturalWidth = textPaint.measureText(line.text);
+            textPaint.setTextScaleX(naturalWidth > 0 ? line.width / naturalWidth : 1f);
+            canvas.drawText(line.text, line.x, line.baseline, textPaint);
+        }
+    }
+}
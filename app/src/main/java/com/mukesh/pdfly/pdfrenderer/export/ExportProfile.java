@@ -0,0 +1,29 @@
+package com.mukesh.pdfly.pdfrenderer.export;
+
+/**
+ * Output resolution and image encoding for pages that have to be flattened. Pages are
+ * rendered straight at the profile's DPI, so lower settings cost less time as well as space.
+ */
+public enum ExportProfile {
+    // Fine for reading on screen and sharing over slow connections
+    SMALLEST(96, Encoding.JPEG, 60),
+    BALANCED(150, Encoding.JPEG, 85),
+    // Lossless, at print resolution
+    ARCHIVAL(300, Encoding.FLATE, 0);
+
+    public enum Encoding {
+        JPEG,
+        FLATE
+    }
+
+    public final int dpi;
+    public final Encoding encoding;
+    // Only used by JPEG, 0-100
+    public final int jpegQuality;
+
+    ExportProfile(int dpi, Encoding encoding, int jpegQuality) {
+        this.dpi = dpi;
+        this.encoding = encoding;
+        this.jpegQuality = jpegQuality;
+    }
+}
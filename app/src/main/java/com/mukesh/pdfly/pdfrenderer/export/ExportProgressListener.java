@@ -0,0 +1,6 @@
+package com.mukesh.pdfly.pdfrenderer.export;
+
+/** Told about each page an exporter finishes. Called on the exporting thread. */
+public interface ExportProgressListener {
+    void onPageExported(int done, int total);
+}
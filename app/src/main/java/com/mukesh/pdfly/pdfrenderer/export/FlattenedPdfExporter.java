@@ -0,0 +1,229 @@
+package com.mukesh.pdfly.pdfrenderer.export;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.SparseArray;
+
+import com.mukesh.pdfly.pdfrenderer.helper.BitmapPool;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPage;
+import com.tom_roush.pdfbox.pdmodel.PDPageContentStream;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+import com.tom_roush.pdfbox.pdmodel.graphics.color.PDDeviceRGB;
+import com.tom_roush.pdfbox.pdmodel.graphics.image.PDImageXObject;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Fallback export that flattens every page into an image: the page rendered from the source
+ * at the output resolution, with its annotations painted on top. Loses text selection and
+ * makes much bigger files.
+ *
+ * Resolution and image encoding come from an {@link ExportProfile}. Pages stream through the
+ * export one by one. A compositor pool with one thread per core renders, paints and
+ * compresses each page, then hands its bitmap straight back. The calling thread is the only
+ * writer and adds finished pages to the output strictly in order. The output document keeps
+ * page images in a temp file rather than in memory. At most {@link #setMaxPagesInFlight}
+ * pages are held at once, however long the document is.
+ */
+public class FlattenedPdfExporter {
+
+    public interface PageSource {
+        /**
+         * Renders the bare page on white at about {@code dpi}, into a mutable bitmap from the
+         * {@link BitmapPool} whose density is the DPI actually used, or returns null to skip it.
+         */
+        Bitmap renderPage(int pageIndex, int dpi) throws Exception;
+    }
+
+    // The output document spills to a temp file past this much heap
+    private static final long MAX_MAIN_MEMORY_BYTES = 16L * 1024 * 1024;
+
+    // One composited page, compressed and ready to be written
+    private static class EncodedPage {
+        final byte[] data;
+        final COSName filter;
+        final int width;
+        final int height;
+        final float widthPt;
+        final float heightPt;
+
+        EncodedPage(byte[] data, COSName filter, int width, int height, int dpi) {
+            this.data = data;
+            this.filter = filter;
+            this.width = width;
+            this.height = height;
+            this.widthPt = width * 72f / dpi;
+            this.heightPt = height * 72f / dpi;
+        }
+    }
+
+    private final PageSource source;
+    private final File tempDir;
+    private final int threadCount;
+    private ExportProfile profile = ExportProfile.BALANCED;
+    // One page per worker, plus the one being written
+    private int maxPagesInFlight;
+    private ExportProgressListener progressListener;
+
+    public FlattenedPdfExporter(Context context, PageSource source) {
+        this.source = source;
+        this.tempDir = context.getCacheDir();
+        this.threadCount = Math.max(1, Runtime.getRuntime().availableProcessors());
+        this.maxPagesInFlight = threadCount + 1;
+    }
+
+    public FlattenedPdfExporter setProfile(ExportProfile profile) {
+        this.profile = profile;
+        return this;
+    }
+
+    /** Pages rendered, queued or being written at any one time. Lower it to save memory. */
+    public FlattenedPdfExporter setMaxPagesInFlight(int maxPagesInFlight) {
+        this.maxPagesInFlight = Math.max(1, maxPagesInFlight);
+        return this;
+    }
+
+    public FlattenedPdfExporter setProgressListener(ExportProgressListener progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    /**
+     * Blocks until the file is written; call off the main thread. Interrupting the calling
+     * thread cancels the export with an {@link InterruptedIOException}.
+     */
+    public void export(int pageCount, List<PageAnnotations> pages, File output) throws IOException {
+        SparseArray<PageAnnotations> annotationsByPage = new SparseArray<>();
+        for (PageAnnotations annotations : pages) {
+            annotationsByPage.put(annotations.pageIndex, annotations);
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService compositors = Executors.newFixedThreadPool(Math.min(threadCount, maxPagesInFlight),
+                runnable -> new Thread(runnable, "pdf-compositor-" + threadNumber.incrementAndGet()));
+        ArrayDeque<Future<EncodedPage>> inFlight = new ArrayDeque<>();
+        MemoryUsageSetting memory = MemoryUsageSetting.setupMixed(MAX_MAIN_MEMORY_BYTES).setTempDir(tempDir);
+
+        try (PDDocument document = new PDDocument(memory)) {
+            int written = 0;
+            for (int i = 0; i < pageCount; i++) {
+                if (inFlight.size() >= maxPagesInFlight) {
+                    writePage(document, inFlight.poll());
+                    onPageWritten(++written, pageCount);
+                }
+                int pageIndex = i;
+                inFlight.add(compositors.submit(() -> composite(pageIndex, annotationsByPage.get(pageIndex))));
+            }
+            while (!inFlight.isEmpty()) {
+                writePage(document, inFlight.poll());
+                onPageWritten(++written, pageCount);
+            }
+            document.save(output);
+        } finally {
+            for (Future<EncodedPage> pending : inFlight) {
+                pending.cancel(true);
+            }
+            compositors.shutdownNow();
+        }
+    }
+
+    // Runs on a compositor thread
+    private EncodedPage composite(int pageIndex, PageAnnotations annotations) throws Exception {
+        Bitmap page = source.renderPage(pageIndex, profile.dpi);
+        if (page == null) return null;
+        try {
+            if (annotations != null && !annotations.isEmpty()) {
+                new AnnotationPainter().paint(new Canvas(page), annotations, page.getWidth(), page.getHeight());
+            }
+            return encode(page);
+        } finally {
+            BitmapPool.getInstance().put(page);
+        }
+    }
+
+    // Runs on the writer thread, in page order
+    private static void writePage(PDDocument document, Future<EncodedPage> composited) throws IOException {
+        EncodedPage encoded;
+        try {
+            encoded = composited.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Failed to composite page", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Export interrupted");
+        }
+        if (encoded == null) return;
+
+        PDPage page = new PDPage(new PDRectangle(encoded.widthPt, encoded.heightPt));
+        document.addPage(page);
+        // Already compressed, so the bytes go into the document as they are
+        PDImageXObject image = new PDImageXObject(document, new ByteArrayInputStream(encoded.data),
+                encoded.filter, encoded.width, encoded.height, 8, PDDeviceRGB.INSTANCE);
+        try (PDPageContentStream stream = new PDPageContentStream(document, page)) {
+            stream.drawImage(image, 0, 0, encoded.widthPt, encoded.heightPt);
+        }
+    }
+
+    private void onPageWritten(int written, int pageCount) throws InterruptedIOException {
+        if (progressListener != null) {
+            progressListener.onPageExported(written, pageCount);
+        }
+        if (Thread.currentThread().isInterrupted()) {
+            throw new InterruptedIOException("Export cancelled");
+        }
+    }
+
+    private EncodedPage encode(Bitmap page) throws IOException {
+        byte[] data;
+        COSName filter;
+        if (profile.encoding == ExportProfile.Encoding.JPEG) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            if (!page.compress(Bitmap.CompressFormat.JPEG, profile.jpegQuality, bytes)) {
+                throw new IOException("Unable to encode page as JPEG");
+            }
+            data = bytes.toByteArray();
+            filter = COSName.DCT_DECODE;
+        } else {
+            data = deflateRgb(page);
+            filter = COSName.FLATE_DECODE;
+        }
+        return new EncodedPage(data, filter, page.getWidth(), page.getHeight(), page.getDensity());
+    }
+
+    // Pages are rendered on white, so alpha is dropped
+    private static byte[] deflateRgb(Bitmap bitmap) throws IOException {
+        int width = bitmap.getWidth();
+        int[] row = new int[width];
+        byte[] rgb = new byte[width * 3];
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DeflaterOutputStream out = new DeflaterOutputStream(bytes)) {
+            for (int y = 0; y < bitmap.getHeight(); y++) {
+                bitmap.getPixels(row, 0, width, 0, y, width, 1);
+                for (int x = 0, i = 0; x < width; x++) {
+                    int pixel = row[x];
+                    rgb[i++] = (byte) (pixel >> 16);
+                    rgb[i++] = (byte) (pixel >> 8);
+                    rgb[i++] = (byte) pixel;
+                }
+                out.write(rgb);
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
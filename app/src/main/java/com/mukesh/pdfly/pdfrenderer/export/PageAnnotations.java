@@ -0,0 +1,277 @@
+package com.mukesh.pdfly.pdfrenderer.export;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.RectF;
+import android.graphics.Typeface;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+import com.mukesh.pdfly.R;
+import com.mukesh.pdfly.pdfrenderer.model.AnnotationPage;
+import com.mukesh.pdfly.pdfrenderer.model.CheckmarkModel;
+import com.mukesh.pdfly.pdfrenderer.model.ElementModel;
+import com.mukesh.pdfly.pdfrenderer.model.InkStroke;
+import com.mukesh.pdfly.pdfrenderer.model.ShapeModel;
+import com.mukesh.pdfly.pdfrenderer.model.ShapeType;
+import com.mukesh.pdfly.pdfrenderer.model.SignatureModel;
+import com.mukesh.pdfly.pdfrenderer.model.StrokeFit;
+import com.mukesh.pdfly.pdfrenderer.model.TextModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Plain-data copy of everything drawn on top of one page, in the page view's pixel
+ * coordinates, ready to be drawn: strokes fitted to curves, text laid out into lines and icons
+ * read into paths. Taken from the page's {@link AnnotationPage} on the main thread so the export
+ * can run in the background on data nothing else changes.
+ */
+public class PageAnnotations {
+
+    // Read once and shared by every checkmark, so exporters can embed it once per file. Only
+    // touched on the main thread, like the model.
+    private static VectorIcon checkmarkIcon;
+
+    public final int pageIndex;
+    public final int viewWidth;
+    public final int viewHeight;
+    public final List<Stroke> strokes = new ArrayList<>();
+    public final List<Overlay> overlays = new ArrayList<>();
+
+    public PageAnnotations(int pageIndex, int viewWidth, int viewHeight) {
+        this.pageIndex = pageIndex;
+        this.viewWidth = viewWidth;
+        this.viewHeight = viewHeight;
+    }
+
+    public boolean isEmpty() {
+        return strokes.isEmpty() && overlays.isEmpty();
+    }
+
+    /**
+     * A freehand stroke as the curve drawn on screen: a start point, then one cubic Bézier per
+     * segment as c1x, c1y, c2x, c2y, x, y. No segments means a single tap, drawn as a dot.
+     */
+    public static class Stroke {
+        public final float startX;
+        public final float startY;
+        public final float[] curves;
+        public final int color;
+        public final float width;
+
+        Stroke(float startX, float startY, float[] curves, int color, float width) {
+            this.startX = startX;
+            this.startY = startY;
+            this.curves = curves;
+            this.color = color;
+            this.width = width;
+        }
+    }
+
+    /** Anything placed on the page. {@link #transform} maps element-local pixels to page view pixels. */
+    public abstract static class Overlay {
+        public final Matrix transform;
+
+        Overlay(Matrix transform) {
+            this.transform = transform;
+        }
+    }
+
+    public static class Shape extends Overlay {
+        public final ShapeType type;
+        public final RectF bounds;
+        public final int color;
+        public final float strokeWidth;
+
+        Shape(Matrix transform, ShapeType type, RectF bounds, int color, float strokeWidth) {
+            super(transform);
+            this.type = type;
+            this.bounds = bounds;
+            this.color = color;
+            this.strokeWidth = strokeWidth;
+        }
+    }
+
+    public static class TextLine {
+        public final String text;
+        public final float x;
+        public final float baseline;
+        // Width Android laid the line out at, so another font can be stretched to match
+        public final float width;
+
+        TextLine(String text, float x, float baseline, float width) {
+            this.text = text;
+            this.x = x;
+            this.baseline = baseline;
+            this.width = width;
+        }
+    }
+
+    public static class Text extends Overlay {
+        public final List<TextLine> lines = new ArrayList<>();
+        // The whole element box, which the background fills
+        public final RectF bounds;
+        // Zero for none
+        public final int backgroundColor;
+        public final float textSizePx;
+        public final int color;
+        public final boolean bold;
+        public final boolean underline;
+        public final boolean strikethrough;
+
+        Text(Matrix transform, RectF bounds, int backgroundColor, float textSizePx, int color, boolean bold,
+             boolean underline, boolean strikethrough) {
+            super(transform);
+            this.bounds = bounds;
+            this.backgroundColor = backgroundColor;
+            this.textSizePx = textSizePx;
+            this.color = color;
+            this.bold = bold;
+            this.underline = underline;
+            this.strikethrough = strikethrough;
+        }
+    }
+
+    /** A vector icon scaled into {@link #bounds}: checkmarks. */
+    public static class Icon extends Overlay {
+        public final VectorIcon icon;
+        public final RectF bounds;
+
+        Icon(Matrix transform, VectorIcon icon, RectF bounds) {
+            super(transform);
+            this.icon = icon;
+            this.bounds = bounds;
+        }
+    }
+
+    /** A bitmap drawn into {@link #bounds}: signatures and text no PDF font can show. */
+    public static class Image extends Overlay {
+        public final Bitmap bitmap;
+        public final RectF bounds;
+
+        Image(Matrix transform, Bitmap bitmap, RectF bounds) {
+            super(transform);
+            this.bitmap = bitmap;
+            this.bounds = bounds;
+        }
+    }
+
+    /**
+     * Copies {@code page} for export. {@code images} holds the pixels signatures refer to.
+     * Must be called on the main thread, which owns the model.
+     */
+    public static PageAnnotations capture(Context context, AnnotationPage page, Map<String, Bitmap> images) {
+        PageAnnotations annotations = new PageAnnotations(page.pageIndex, page.getWidth(), page.getHeight());
+
+        for (InkStroke ink : page.getStrokes()) {
+            if (ink.points.length < 2) continue;
+            annotations.strokes.add(new Stroke(ink.points[0], ink.points[1], StrokeFit.fitCurves(ink.points),
+                    ink.color, ink.width));
+        }
+
+        for (ElementModel element : page.getElements()) {
+            Overlay overlay = captureElement(context, element, images);
+            if (overlay != null) {
+                annotations.overlays.add(overlay);
+            }
+        }
+        return annotations;
+    }
+
+    private static Overlay captureElement(Context context, ElementModel element, Map<String, Bitmap> images) {
+        if (element.width <= 0 || element.height <= 0) return null;
+
+        // Scale and rotation about the centre, then the position in the page, as a View does it
+        float centerX = element.width / 2f;
+        float centerY = element.height / 2f;
+        Matrix transform = new Matrix();
+        transform.setScale(element.scale, element.scale, centerX, centerY);
+        transform.postRotate(element.rotation, centerX, centerY);
+        transform.postTranslate(element.x, element.y);
+
+        if (element instanceof ShapeModel) {
+            ShapeModel shape = (ShapeModel) element;
+            transform.preRotate(shape.angle, centerX, centerY);
+            return new Shape(transform, shape.type, inset(element, shape.inset), shape.color, shape.strokeWidth);
+        }
+        if (element instanceof CheckmarkModel) {
+            CheckmarkModel checkmark = (CheckmarkModel) element;
+            transform.preRotate(checkmark.angle, centerX, centerY);
+            if (checkmarkIcon == null) {
+                checkmarkIcon = VectorIcon.load(context, R.drawable.checkmark);
+            }
+            return checkmarkIcon != null ? new Icon(transform, checkmarkIcon, inset(element, checkmark.inset)) : null;
+        }
+        if (element instanceof SignatureModel) {
+            SignatureModel signature = (SignatureModel) element;
+            Bitmap bitmap = images.get(signature.imageKey);
+            float left = (element.width - signature.imageWidth) / 2f;
+            float top = (element.height - signature.imageHeight) / 2f;
+            RectF bounds = new RectF(left, top, left + signature.imageWidth, top + signature.imageHeight);
+            return bitmap != null ? new Image(transform, bitmap, bounds) : null;
+        }
+        if (element instanceof TextModel) {
+            return captureText((TextModel) element, transform);
+        }
+        return null;
+    }
+
+    // Lays the text out again the way the element's TextView does: wrapped inside the
+    // padding, centred both ways
+    private static Overlay captureText(TextModel model, Matrix transform) {
+        int innerWidth = (int) (model.width - 2 * model.padding);
+        if (innerWidth <= 0 || model.text == null) return null;
+
+        TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+        paint.setTextSize(model.textSizePx);
+        paint.setColor(model.color);
+        paint.setTypeface(model.bold ? Typeface.DEFAULT_BOLD : Typeface.DEFAULT);
+        paint.setUnderlineText(model.underline);
+        paint.setStrikeThruText(model.strikethrough);
+        StaticLayout layout = StaticLayout.Builder.obtain(model.text, 0, model.text.length(), paint, innerWidth)
+                .setAlignment(Layout.Alignment.ALIGN_CENTER)
+                .build();
+
+        float left = model.padding;
+        float top = model.padding + Math.max(0, (model.height - 2 * model.padding - layout.getHeight()) / 2f);
+        RectF bounds = new RectF(0, 0, model.width, model.height);
+        Text text = new Text(transform, bounds, model.backgroundColor, model.textSizePx, model.color,
+                model.bold, model.underline, model.strikethrough);
+        CharSequence content = layout.getText();
+        for (int line = 0; line < layout.getLineCount(); line++) {
+            String lineText = content.subSequence(layout.getLineStart(line), layout.getLineEnd(line))
+                    .toString().replace("\n", "");
+            if (lineText.trim().isEmpty()) continue;
+            text.lines.add(new TextLine(lineText, left + layout.getLineLeft(line),
+                    top + layout.getLineBaseline(line), layout.getLineWidth(line)));
+        }
+
+        for (TextLine line : text.lines) {
+            if (!VectorPdfExporter.canEncode(line.text, model.bold)) {
+                // Outside the standard fonts' character set: embed it as an image instead
+                Bitmap bitmap = rasterize(model, layout, left, top);
+                return bitmap != null ? new Image(transform, bitmap, bounds) : null;
+            }
+        }
+        return text;
+    }
+
+    private static RectF inset(ElementModel element, float inset) {
+        return new RectF(inset, inset, element.width - inset, element.height - inset);
+    }
+
+    private static Bitmap rasterize(TextModel model, Layout layout, float left, float top) {
+        Bitmap bitmap = Bitmap.createBitmap((int) model.width, (int) model.height, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        canvas.drawColor(model.backgroundColor);
+        canvas.translate(left, top);
+        layout.draw(canvas);
+        return bitmap;
+    }
+}
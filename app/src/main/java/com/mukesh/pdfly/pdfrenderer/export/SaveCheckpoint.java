@@ -0,0 +1,360 @@
+package com.mukesh.pdfly.pdfrenderer.export;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.graphics.RectF;
+import android.net.Uri;
+import android.util.Log;
+
+import com.mukesh.pdfly.pdfrenderer.model.ShapeType;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything a save job needs to run again after the process dies: the source, the output,
+ * the export profile and the captured annotations. Lives in its own directory, with one PNG
+ * per distinct image. A PDF writer can't pick up a half-written file, so a resumed job starts
+ * the export over.
+ */
+public class SaveCheckpoint {
+
+    private static final String TAG = "SaveCheckpoint";
+    private static final String JOB_FILE = "job.bin";
+    private static final int VERSION = 6;
+
+    private static final byte KIND_SHAPE = 0;
+    private static final byte KIND_TEXT = 1;
+    private static final byte KIND_IMAGE = 2;
+    private static final byte KIND_ICON = 3;
+
+    public final File dir;
+    public final Uri source;
+    public final File output;
+    public final ExportProfile profile;
+
+    public SaveCheckpoint(File dir, Uri source, File output, ExportProfile profile) {
+        this.dir = dir;
+        this.source = source;
+        this.output = output;
+        this.profile = profile;
+    }
+
+    /** Checkpoints left behind by jobs that never finished, oldest first. */
+    public static List<File> findPending(File parentDir) {
+        List<File> pending = new ArrayList<>();
+        File[] dirs = parentDir.listFiles();
+        if (dirs == null) return pending;
+        for (File dir : dirs) {
+            if (new File(dir, JOB_FILE).exists()) {
+                pending.add(dir);
+            } else {
+                // Killed before the checkpoint was complete; nothing to resume
+                delete(dir);
+            }
+        }
+        pending.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return pending;
+    }
+
+    /** Blocks on file work; call off the main thread. */
+    public void write(List<PageAnnotations> pages) throws IOException {
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new IOException("Unable to create " + dir);
+        }
+
+        // Written next to the job file and renamed, so a half-written checkpoint is never read
+        File temp = new File(dir, JOB_FILE + ".tmp");
+        Map<Bitmap, Integer> imageIndexes = new IdentityHashMap<>();
+        Map<VectorIcon, Integer> iconIndexes = new IdentityHashMap<>();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)))) {
+            out.writeInt(VERSION);
+            writeString(out, source.toString());
+            writeString(out, output.getPath());
+            writeString(out, profile.name());
+            out.writeInt(pages.size());
+            for (PageAnnotations page : pages) {
+                writePage(out, page, imageIndexes, iconIndexes);
+            }
+        }
+        if (!temp.renameTo(new File(dir, JOB_FILE))) {
+            throw new IOException("Unable to write checkpoint in " + dir);
+        }
+    }
+
+    public static SaveCheckpoint read(File dir, List<PageAnnotations> pagesOut) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(new File(dir, JOB_FILE))))) {
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version " + version);
+            }
+            SaveCheckpoint checkpoint = new SaveCheckpoint(dir, Uri.parse(readString(in)), new File(readString(in)),
+                    ExportProfile.valueOf(readString(in)));
+            List<Bitmap> images = new ArrayList<>();
+            List<VectorIcon> icons = new ArrayList<>();
+            int pageCount = in.readInt();
+            for (int i = 0; i < pageCount; i++) {
+                pagesOut.add(checkpoint.readPage(in, images, icons));
+            }
+            return checkpoint;
+        }
+    }
+
+    public void delete() {
+        delete(dir);
+    }
+
+    public static void delete(File dir) {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        if (!dir.delete()) {
+            Log.w(TAG, "Failed to delete " + dir);
+        }
+    }
+
+    private void writePage(DataOutputStream out, PageAnnotations page, Map<Bitmap, Integer> imageIndexes,
+                           Map<VectorIcon, Integer> iconIndexes) throws IOException {
+        out.writeInt(page.pageIndex);
+        out.writeInt(page.viewWidth);
+        out.writeInt(page.viewHeight);
+
+        out.writeInt(page.strokes.size());
+        for (PageAnnotations.Stroke stroke : page.strokes) {
+            out.writeInt(stroke.color);
+            out.writeFloat(stroke.width);
+            out.writeFloat(stroke.startX);
+            out.writeFloat(stroke.startY);
+            writeFloats(out, stroke.curves);
+        }
+
+        out.writeInt(page.overlays.size());
+        for (PageAnnotations.Overlay overlay : page.overlays) {
+            if (overlay instanceof PageAnnotations.Shape) {
+                PageAnnotations.Shape shape = (PageAnnotations.Shape) overlay;
+                out.writeByte(KIND_SHAPE);
+                writeMatrix(out, overlay.transform);
+                writeString(out, shape.type.name());
+                writeRect(out, shape.bounds);
+                out.writeInt(shape.color);
+                out.writeFloat(shape.strokeWidth);
+            } else if (overlay instanceof PageAnnotations.Text) {
+                PageAnnotations.Text text = (PageAnnotations.Text) overlay;
+                out.writeByte(KIND_TEXT);
+                writeMatrix(out, overlay.transform);
+                writeRect(out, text.bounds);
+                out.writeInt(text.backgroundColor);
+                out.writeFloat(text.textSizePx);
+                out.writeInt(text.color);
+                out.writeBoolean(text.bold);
+                out.writeBoolean(text.underline);
+                out.writeBoolean(text.strikethrough);
+                out.writeInt(text.lines.size());
+                for (PageAnnotations.TextLine line : text.lines) {
+                    writeString(out, line.text);
+                    out.writeFloat(line.x);
+                    out.writeFloat(line.baseline);
+                    out.writeFloat(line.width);
+                }
+            } else if (overlay instanceof PageAnnotations.Image) {
+                PageAnnotations.Image image = (PageAnnotations.Image) overlay;
+                out.writeByte(KIND_IMAGE);
+                writeMatrix(out, overlay.transform);
+                out.writeInt(writeImage(image.bitmap, imageIndexes));
+                writeRect(out, image.bounds);
+            } else if (overlay instanceof PageAnnotations.Icon) {
+                PageAnnotations.Icon icon = (PageAnnotations.Icon) overlay;
+                out.writeByte(KIND_ICON);
+                writeMatrix(out, overlay.transform);
+                writeIcon(out, icon.icon, iconIndexes);
+                writeRect(out, icon.bounds);
+            }
+        }
+    }
+
+    private PageAnnotations readPage(DataInputStream in, List<Bitmap> images, List<VectorIcon> icons)
+            throws IOException {
+        PageAnnotations page = new PageAnnotations(in.readInt(), in.readInt(), in.readInt());
+
+        int strokeCount = in.readInt();
+        for (int i = 0; i < strokeCount; i++) {
+            int color = in.readInt();
+            float width = in.readFloat();
+            float startX = in.readFloat();
+            float startY = in.readFloat();
+            page.strokes.add(new PageAnnotations.Stroke(startX, startY, readFloats(in), color, width));
+        }
+
+        int overlayCount = in.readInt();
+        for (int i = 0; i < overlayCount; i++) {
+            byte kind = in.readByte();
+            Matrix transform = readMatrix(in);
+            switch (kind) {
+                case KIND_SHAPE:
+                    ShapeType type = ShapeType.valueOf(readString(in));
+                    RectF bounds = readRect(in);
+                    page.overlays.add(new PageAnnotations.Shape(transform, type, bounds, in.readInt(), in.readFloat()));
+                    break;
+                case KIND_TEXT:
+                    PageAnnotations.Text text = new PageAnnotations.Text(transform, readRect(in), in.readInt(),
+                            in.readFloat(), in.readInt(), in.readBoolean(), in.readBoolean(), in.readBoolean());
+                    int lineCount = in.readInt();
+                    for (int j = 0; j < lineCount; j++) {
+                        text.lines.add(new PageAnnotations.TextLine(readString(in), in.readFloat(), in.readFloat(),
+                                in.readFloat()));
+                    }
+                    page.overlays.add(text);
+                    break;
+                case KIND_IMAGE:
+                    Bitmap bitmap = readImage(in.readInt(), images);
+                    page.overlays.add(new PageAnnotations.Image(transform, bitmap, readRect(in)));
+                    break;
+                case KIND_ICON:
+                    VectorIcon icon = readIcon(in, icons);
+                    page.overlays.add(new PageAnnotations.Icon(transform, icon, readRect(in)));
+                    break;
+                default:
+                    throw new IOException("Unknown overlay kind " + kind);
+            }
+        }
+        return page;
+    }
+
+    private int writeImage(Bitmap bitmap, Map<Bitmap, Integer> imageIndexes) throws IOException {
+        Integer index = imageIndexes.get(bitmap);
+        if (index != null) return index;
+
+        index = imageIndexes.size();
+        try (FileOutputStream out = new FileOutputStream(imageFile(index))) {
+            if (!bitmap.compress(Bitmap.CompressFormat.PNG, 100, out)) {
+                throw new IOException("Unable to encode image " + index);
+            }
+        }
+        imageIndexes.put(bitmap, index);
+        return index;
+    }
+
+    // Images are numbered in the order they were written, so they are read back in order too
+    private Bitmap readImage(int index, List<Bitmap> images) throws IOException {
+        if (index < images.size()) return images.get(index);
+
+        Bitmap bitmap = BitmapFactory.decodeFile(imageFile(index).getPath());
+        if (bitmap == null) {
+            throw new IOException("Missing image " + index);
+        }
+        images.add(bitmap);
+        return bitmap;
+    }
+
+    // Icons are small, so they go in the job file itself: in full the first time, then by index
+    private static void writeIcon(DataOutputStream out, VectorIcon icon, Map<VectorIcon, Integer> iconIndexes)
+            throws IOException {
+        Integer index = iconIndexes.get(icon);
+        if (index != null) {
+            out.writeInt(index);
+            return;
+        }
+        index = iconIndexes.size();
+        iconIndexes.put(icon, index);
+        out.writeInt(index);
+        out.writeFloat(icon.viewportWidth);
+        out.writeFloat(icon.viewportHeight);
+        out.writeInt(icon.paths.size());
+        for (VectorIcon.FilledPath path : icon.paths) {
+            out.writeInt(path.color);
+            out.writeInt(path.verbs.length);
+            out.write(path.verbs);
+            writeFloats(out, path.points);
+        }
+    }
+
+    private static VectorIcon readIcon(DataInputStream in, List<VectorIcon> icons) throws IOException {
+        int index = in.readInt();
+        if (index < icons.size()) return icons.get(index);
+        if (index != icons.size()) {
+            throw new IOException("Icon " + index + " read out of order");
+        }
+
+        VectorIcon icon = new VectorIcon(in.readFloat(), in.readFloat());
+        int pathCount = in.readInt();
+        for (int i = 0; i < pathCount; i++) {
+            int color = in.readInt();
+            byte[] verbs = new byte[in.readInt()];
+            in.readFully(verbs);
+            icon.paths.add(new VectorIcon.FilledPath(color, verbs, readFloats(in)));
+        }
+        icons.add(icon);
+        return icon;
+    }
+
+    private File imageFile(int index) {
+        return new File(dir, "image_" + index + ".png");
+    }
+
+    private static void writeFloats(DataOutputStream out, float[] values) throws IOException {
+        out.writeInt(values.length);
+        for (float value : values) {
+            out.writeFloat(value);
+        }
+    }
+
+    private static float[] readFloats(DataInputStream in) throws IOException {
+        float[] values = new float[in.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = in.readFloat();
+        }
+        return values;
+    }
+
+    // Not writeUTF, which can't take more than 64 KB
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeMatrix(DataOutputStream out, Matrix matrix) throws IOException {
+        float[] values = new float[9];
+        matrix.getValues(values);
+        writeFloats(out, values);
+    }
+
+    private static Matrix readMatrix(DataInputStream in) throws IOException {
+        Matrix matrix = new Matrix();
+        matrix.setValues(readFloats(in));
+        return matrix;
+    }
+
+    private static void writeRect(DataOutputStream out, RectF rect) throws IOException {
+        out.writeFloat(rect.left);
+        out.writeFloat(rect.top);
+        out.writeFloat(rect.right);
+        out.writeFloat(rect.bottom);
+    }
+
+    private static RectF readRect(DataInputStream in) throws IOException {
+        return new RectF(in.readFloat(), in.readFloat(), in.readFloat(), in.readFloat());
+    }
+}
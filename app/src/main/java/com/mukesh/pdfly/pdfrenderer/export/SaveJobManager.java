@@ -0,0 +1,255 @@
+package com.mukesh.pdfly.pdfrenderer.export;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.pdf.PdfRenderer;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+import android.widget.Toast;
+
+import com.mukesh.pdfly.pdfrenderer.helper.AnnotationStore;
+import com.mukesh.pdfly.pdfrenderer.helper.PdfRendererHelper;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Runs saves on an app-wide thread, so a save carries on after the editor that started it is
+ * closed. Jobs run one at a time in the order they were started, report progress page by page
+ * and can be cancelled one by one, by the id {@link #save} returns. Each job is checkpointed to
+ * {@code filesDir/save_jobs} before it starts; {@link #resumePendingJobs} runs whatever the
+ * process was killed in the middle of. Once a job has saved, the source's stored edits are
+ * forgotten here rather than by the editor, which may be closed by then and would otherwise
+ * bring them back on top of the saved file.
+ *
+ * Main-thread only, apart from the jobs themselves. Listener calls arrive on the main thread.
+ */
+public class SaveJobManager {
+
+    private static final String TAG = "SaveJobManager";
+    private static final String DIR_NAME = "save_jobs";
+
+    // Every job is reported to every listener, so each call says which job it is about
+    public interface Listener {
+        void onSaveProgress(long jobId, int done, int total);
+
+        // Null when the save failed
+        void onSaveFinished(long jobId, File output);
+
+        void onSaveCancelled(long jobId);
+    }
+
+    private class SaveJob implements Runnable {
+        final long id;
+        final SaveCheckpoint checkpoint;
+        final List<PageAnnotations> pages;
+        // Resumed jobs were read from their checkpoint, so it is already on disk
+        final boolean resumed;
+        Future<?> future;
+
+        SaveJob(long id, SaveCheckpoint checkpoint, List<PageAnnotations> pages, boolean resumed) {
+            this.id = id;
+            this.checkpoint = checkpoint;
+            this.pages = pages;
+            this.resumed = resumed;
+        }
+
+        @Override
+        public void run() {
+            File output = checkpoint.output;
+            // Written under another name first, so a killed save never leaves half a PDF behind
+            File partial = new File(output.getPath() + ".part");
+            try {
+                if (!resumed) {
+                    checkpoint.write(pages);
+                }
+
+                exportTo(checkpoint, pages, partial, (done, total) ->
+                        mainHandler.post(() -> onJobProgress(this, done, total)));
+                if (!partial.renameTo(output)) {
+                    throw new IOException("Unable to move the saved file to " + output);
+                }
+                checkpoint.delete();
+                mainHandler.post(() -> onJobFinished(this, output));
+            } catch (Exception e) {
+                partial.delete();
+                checkpoint.delete();
+                if (isCancellation(e)) return;
+                Log.e(TAG, "Save failed", e);
+                mainHandler.post(() -> onJobFinished(this, null));
+            }
+        }
+    }
+
+    private static SaveJobManager instance;
+
+    private final Context appContext;
+    private final File jobsDir;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "pdf-save"));
+    private final List<SaveJob> jobs = new ArrayList<>();
+    private final List<Listener> listeners = new ArrayList<>();
+    private long nextJobId = 1;
+
+    public static synchronized SaveJobManager getInstance(Context context) {
+        if (instance == null) {
+            instance = new SaveJobManager(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private SaveJobManager(Context appContext) {
+        this.appContext = appContext;
+        this.jobsDir = new File(appContext.getFilesDir(), DIR_NAME);
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isSaving() {
+        return !jobs.isEmpty();
+    }
+
+    /**
+     * Queues a save of {@code pages} on top of {@code source}, written to {@code output}.
+     * {@code profile} only applies if the pages have to be flattened. Returns the job's id.
+     */
+    public long save(Uri source, List<PageAnnotations> pages, File output, ExportProfile profile) {
+        keepReadable(source);
+        File dir = new File(jobsDir, Long.toString(System.currentTimeMillis()));
+        SaveJob job = new SaveJob(nextJobId++, new SaveCheckpoint(dir, source, output, profile), pages, false);
+        start(job);
+        return job.id;
+    }
+
+    /** Restarts saves that were still running when the process died. Call once at startup. */
+    public void resumePendingJobs() {
+        executor.execute(() -> {
+            for (File dir : SaveCheckpoint.findPending(jobsDir)) {
+                try {
+                    List<PageAnnotations> pages = new ArrayList<>();
+                    SaveCheckpoint checkpoint = SaveCheckpoint.read(dir, pages);
+                    mainHandler.post(() -> start(new SaveJob(nextJobId++, checkpoint, pages, true)));
+                } catch (IOException | RuntimeException e) {
+                    Log.w(TAG, "Dropping unreadable save job " + dir.getName(), e);
+                    SaveCheckpoint.delete(dir);
+                }
+            }
+        });
+    }
+
+    /** Cancels the save with this id, running or queued. Does nothing once it has finished. */
+    public void cancel(long jobId) {
+        SaveJob job = findJob(jobId);
+        if (job == null) return;
+        if (job.future.cancel(true)) {
+            // A job that never started can't clean up after itself
+            executor.execute(job.checkpoint::delete);
+        }
+        jobs.remove(job);
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onSaveCancelled(jobId);
+        }
+    }
+
+    private void start(SaveJob job) {
+        jobs.add(job);
+        job.future = executor.submit(job);
+    }
+
+    // A resumed job opens the source again in a new process, where a grant given to the editor is gone
+    private void keepReadable(Uri source) {
+        if (!ContentResolver.SCHEME_CONTENT.equals(source.getScheme())) return;
+        try {
+            appContext.getContentResolver().takePersistableUriPermission(source,
+                    Intent.FLAG_GRANT_READ_URI_PERMISSION);
+        } catch (SecurityException e) {
+            // Not offered as persistable, e.g. opened from another app. If the process dies the resumed
+            // job fails to read it; the edits are still in the AnnotationStore for the next open.
+            Log.w(TAG, "Can't keep access to " + source + " past this process", e);
+        }
+    }
+
+    private SaveJob findJob(long jobId) {
+        for (SaveJob job : jobs) {
+            if (job.id == jobId) return job;
+        }
+        return null;
+    }
+
+    private void onJobProgress(SaveJob job, int done, int total) {
+        if (!jobs.contains(job)) return;
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onSaveProgress(job.id, done, total);
+        }
+    }
+
+    private void onJobFinished(SaveJob job, File output) {
+        if (!jobs.remove(job)) return;
+
+        // The editor may be long gone, so the result is shown from here
+        if (output != null) {
+            AnnotationStore.getInstance(appContext).delete(job.checkpoint.source);
+            Toast.makeText(appContext, "Saved to Downloads", Toast.LENGTH_SHORT).show();
+            Intent scanIntent = new Intent(Intent.ACTION_MEDIA_SCANNER_SCAN_FILE);
+            scanIntent.setData(Uri.fromFile(output));
+            appContext.sendBroadcast(scanIntent);
+        } else {
+            Toast.makeText(appContext, "Failed to save PDF", Toast.LENGTH_SHORT).show();
+        }
+        for (Listener listener : new ArrayList<>(listeners)) {
+            listener.onSaveFinished(job.id, output);
+        }
+    }
+
+    // Runs on the save thread
+    private void exportTo(SaveCheckpoint checkpoint, List<PageAnnotations> pages, File output,
+                          ExportProgressListener progress) throws Exception {
+        Uri source = checkpoint.source;
+        try {
+            new VectorPdfExporter(appContext)
+                    .setProgressListener(progress)
+                    .export(source, pages, output);
+            return;
+        } catch (Exception e) {
+            if (isCancellation(e)) throw e;
+            // e.g. a damaged file PDFBox refuses to parse but PdfRenderer could display
+            Log.w(TAG, "Vector export failed, flattening pages instead", e);
+        }
+
+        // The editor's renderer may already be closed, so the job opens its own
+        try (ParcelFileDescriptor pfd = PdfRendererHelper.openDescriptor(appContext, source);
+             PdfRenderer renderer = new PdfRenderer(pfd)) {
+            FlattenedPdfExporter.PageSource pageSource = (pageIndex, dpi) -> {
+                // PdfRenderer can only have one page open at a time
+                synchronized (renderer) {
+                    return PdfRendererHelper.renderPageAtDpi(renderer, pageIndex, dpi);
+                }
+            };
+            new FlattenedPdfExporter(appContext, pageSource)
+                    .setProfile(checkpoint.profile)
+                    .setProgressListener(progress)
+                    .export(renderer.getPageCount(), pages, output);
+        }
+    }
+
+    private static boolean isCancellation(Exception e) {
+        return e instanceof InterruptedIOException || Thread.currentThread().isInterrupted();
+    }
+}
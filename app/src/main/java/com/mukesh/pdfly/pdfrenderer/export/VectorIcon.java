@@ -0,0 +1,203 @@
+package com.mukesh.pdfly.pdfrenderer.export;
+
+import android.content.Context;
+import android.content.res.XmlResourceParser;
+import android.graphics.Color;
+import android.util.Log;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The filled paths of a vector drawable, read from its XML so they can be exported as vector
+ * content instead of as a bitmap. Coordinates are in the drawable's viewport, y down. Only
+ * plain {@code <path>}s with a fill colour and move, line and cubic commands are understood,
+ * which is what the icons placed on pages use.
+ */
+public class VectorIcon {
+
+    private static final String TAG = "VectorIcon";
+    private static final String ANDROID_NS = "http://schemas.android.com/apk/res/android";
+
+    public static final byte MOVE = 0;
+    public static final byte LINE = 1;
+    public static final byte CUBIC = 2;
+    public static final byte CLOSE = 3;
+
+    public final float viewportWidth;
+    public final float viewportHeight;
+    // Back to front
+    public final List<FilledPath> paths = new ArrayList<>();
+
+    /** One path: its verbs, and their points as x, y pairs, one for a move or line and three for a cubic. */
+    public static class FilledPath {
+        public final int color;
+        public final byte[] verbs;
+        public final float[] points;
+
+        FilledPath(int color, byte[] verbs, float[] points) {
+            this.color = color;
+            this.verbs = verbs;
+            this.points = points;
+        }
+    }
+
+    VectorIcon(float viewportWidth, float viewportHeight) {
+        this.viewportWidth = viewportWidth;
+        this.viewportHeight = viewportHeight;
+    }
+
+    /** Null if the drawable uses anything this class doesn't understand. */
+    public static VectorIcon load(Context context, int drawableRes) {
+        try (XmlResourceParser parser = context.getResources().getXml(drawableRes)) {
+            VectorIcon icon = null;
+            for (int event = parser.next(); event != XmlPullParser.END_DOCUMENT; event = parser.next()) {
+                if (event != XmlPullParser.START_TAG) continue;
+                switch (parser.getName()) {
+                    case "vector":
+                        icon = new VectorIcon(parser.getAttributeFloatValue(ANDROID_NS, "viewportWidth", 0),
+                                parser.getAttributeFloatValue(ANDROID_NS, "viewportHeight", 0));
+                        break;
+                    case "path":
+                        if (icon == null) return null;
+                        int color = fillColor(context, parser);
+                        String data = parser.getAttributeValue(ANDROID_NS, "pathData");
+                        if (Color.alpha(color) != 0 && data != null) {
+                            icon.paths.add(parsePathData(color, data));
+                        }
+                        break;
+                    default:
+                        // Groups, clip paths, gradients: not worth supporting until an icon needs them
+                        Log.w(TAG, "Unsupported <" + parser.getName() + "> in drawable " + drawableRes);
+                        return null;
+                }
+            }
+            return icon != null && icon.viewportWidth > 0 && icon.viewportHeight > 0 ? icon : null;
+        } catch (XmlPullParserException | IOException | IllegalArgumentException e) {
+            Log.w(TAG, "Failed to read drawable " + drawableRes, e);
+            return null;
+        }
+    }
+
+    private static int fillColor(Context context, XmlResourceParser parser) {
+        int colorRes = parser.getAttributeResourceValue(ANDROID_NS, "fillColor", 0);
+        int color = colorRes != 0 ? context.getColor(colorRes)
+                : parser.getAttributeIntValue(ANDROID_NS, "fillColor", Color.TRANSPARENT);
+        float alpha = parser.getAttributeFloatValue(ANDROID_NS, "fillAlpha", 1f);
+        return Color.argb(Math.round(Color.alpha(color) * alpha), Color.red(color), Color.green(color),
+                Color.blue(color));
+    }
+
+    // SVG path syntax, absolute and relative: M, L, H, V, C and Z
+    static FilledPath parsePathData(int color, String data) {
+        byte[] verbs = new byte[16];
+        float[] points = new float[64];
+        int verbCount = 0;
+        int pointCount = 0;
+
+        float x = 0, y = 0;
+        float startX = 0, startY = 0;
+        char command = 0;
+        int[] position = {0};
+        while (true) {
+            skipSeparators(data, position);
+            if (position[0] >= data.length()) break;
+
+            char c = data.charAt(position[0]);
+            if (Character.isLetter(c)) {
+                command = c;
+                position[0]++;
+            } else if (command == 0) {
+                throw new IllegalArgumentException("Path data starts with a number: " + data);
+            }
+            boolean relative = Character.isLowerCase(command);
+            float baseX = relative ? x : 0;
+            float baseY = relative ? y : 0;
+
+            if (verbCount + 1 > verbs.length) verbs = Arrays.copyOf(verbs, verbs.length * 2);
+            if (pointCount + 6 > points.length) points = Arrays.copyOf(points, points.length * 2);
+            switch (Character.toUpperCase(command)) {
+                case 'M':
+                    x = baseX + nextNumber(data, position);
+                    y = baseY + nextNumber(data, position);
+                    startX = x;
+                    startY = y;
+                    verbs[verbCount++] = MOVE;
+                    points[pointCount++] = x;
+                    points[pointCount++] = y;
+                    // Numbers after a move are lines
+                    command = relative ? 'l' : 'L';
+                    break;
+                case 'L':
+                case 'H':
+                case 'V':
+                    char upper = Character.toUpperCase(command);
+                    if (upper != 'V') x = baseX + nextNumber(data, position);
+                    if (upper != 'H') y = baseY + nextNumber(data, position);
+                    verbs[verbCount++] = LINE;
+                    points[pointCount++] = x;
+                    points[pointCount++] = y;
+                    break;
+                case 'C':
+                    for (int i = 0; i < 3; i++) {
+                        points[pointCount++] = baseX + nextNumber(data, position);
+                        points[pointCount++] = baseY + nextNumber(data, position);
+                    }
+                    x = points[pointCount - 2];
+                    y = points[pointCount - 1];
+                    verbs[verbCount++] = CUBIC;
+                    break;
+                case 'Z':
+                    verbs[verbCount++] = CLOSE;
+                    x = startX;
+                    y = startY;
+                    // A number straight after Z has no command to belong to
+                    command = 0;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported path command " + command);
+            }
+        }
+        return new FilledPath(color, Arrays.copyOf(verbs, verbCount), Arrays.copyOf(points, pointCount));
+    }
+
+    private static void skipSeparators(String data, int[] position) {
+        while (position[0] < data.length()) {
+            char c = data.charAt(position[0]);
+            if (c != ',' && !Character.isWhitespace(c)) break;
+            position[0]++;
+        }
+    }
+
+    // A number ends at the next separator, a sign not after an exponent, or a second decimal point
+    private static float nextNumber(String data, int[] position) {
+        skipSeparators(data, position);
+        int start = position[0];
+        int end = start;
+        boolean seenPoint = false;
+        boolean seenExponent = false;
+        while (end < data.length()) {
+            char c = data.charAt(end);
+            if ((c == '-' || c == '+') && end > start && Character.toLowerCase(data.charAt(end - 1)) != 'e') break;
+            if (c == '.') {
+                if (seenPoint || seenExponent) break;
+                seenPoint = true;
+            } else if (c == 'e' || c == 'E') {
+                seenExponent = true;
+            } else if (!Character.isDigit(c) && c != '-' && c != '+') {
+                break;
+            }
+            end++;
+        }
+        if (end == start) {
+            throw new IllegalArgumentException("Expected a number at " + start + " in " + data);
+        }
+        position[0] = end;
+        return Float.parseFloat(data.substring(start, end));
+    }
+}
@@ -0,0 +1,412 @@
+package com.mukesh.pdfly.pdfrenderer.export;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.graphics.RectF;
+import android.net.Uri;
+
+import com.tom_roush.pdfbox.cos.COSBase;
+import com.tom_roush.pdfbox.cos.COSDictionary;
+import com.tom_roush.pdfbox.cos.COSName;
+import com.tom_roush.pdfbox.cos.COSUpdateInfo;
+import com.tom_roush.pdfbox.io.MemoryUsageSetting;
+import com.tom_roush.pdfbox.pdmodel.PDDocument;
+import com.tom_roush.pdfbox.pdmodel.PDPage;
+import com.tom_roush.pdfbox.pdmodel.PDPageContentStream;
+import com.tom_roush.pdfbox.pdmodel.PDResources;
+import com.tom_roush.pdfbox.pdmodel.common.PDRectangle;
+import com.tom_roush.pdfbox.pdmodel.font.PDType1Font;
+import com.tom_roush.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import com.tom_roush.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import com.tom_roush.pdfbox.pdmodel.graphics.image.PDImageXObject;
+import com.tom_roush.pdfbox.pdmodel.graphics.state.PDExtendedGraphicsState;
+import com.tom_roush.pdfbox.util.Matrix;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes annotations into the original PDF as vector content appended to each edited page,
+ * instead of flattening every page into a bitmap. Untouched pages, and the original content of
+ * edited ones, are copied as they are, so text stays selectable and the file stays small.
+ *
+ * In {@link SaveMode#INCREMENTAL} mode (the default) the original bytes are copied unchanged
+ * and only the edited pages' objects are appended with a new xref section, which keeps
+ * existing digital signatures valid.
+ */
+public class VectorPdfExporter {
+
+    public enum SaveMode {
+        // Rewrites every object of the document
+        FULL,
+        // Original file followed by an update section with just the changed objects
+        INCREMENTAL
+    }
+
+    // Control point distance for a quarter circle drawn as a cubic Bezier
+    private static final float CIRCLE_KAPPA = 0.5522848f;
+    // Decoration offsets relative to the text size, close to what Android draws
+    private static final float UNDERLINE_OFFSET = 0.11f;
+    private static final float STRIKE_OFFSET = -0.28f;
+    private static final float DECORATION_THICKNESS = 1f / 18f;
+    // The parsed document spills to a temp file past this much heap
+    private static final long MAX_MAIN_MEMORY_BYTES = 16L * 1024 * 1024;
+
+    private final Context context;
+    private SaveMode saveMode = SaveMode.INCREMENTAL;
+    private ExportProgressListener progressListener;
+
+    public VectorPdfExporter(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public VectorPdfExporter setSaveMode(SaveMode saveMode) {
+        this.saveMode = saveMode;
+        return this;
+    }
+
+    public VectorPdfExporter setProgressListener(ExportProgressListener progressListener) {
+        this.progressListener = progressListener;
+        return this;
+    }
+
+    /** True if the text can be written with the standard Helvetica font. */
+    public static boolean canEncode(String text, boolean bold) {
+        try {
+            font(bold).encode(text);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    private static PDType1Font font(boolean bold) {
+        return bold ? PDType1Font.HELVETICA_BOLD : PDType1Font.HELVETICA;
+    }
+
+    /** Interrupting the calling thread cancels the export with an {@link InterruptedIOException}. */
+    public void export(Uri source, List<PageAnnotations> pages, File output) throws IOException {
+        InputStream in = context.getContentResolver().openInputStream(source);
+        if (in == null) {
+            throw new FileNotFoundException("Unable to open " + source);
+        }
+
+        // Large scans are parsed through a temp file instead of being held on the heap
+        MemoryUsageSetting memory = MemoryUsageSetting.setupMixed(MAX_MAIN_MEMORY_BYTES)
+                .setTempDir(context.getCacheDir());
+        try (InputStream input = in; PDDocument document = PDDocument.load(input, memory)) {
+            boolean incremental = saveMode == SaveMode.INCREMENTAL && !document.isEncrypted();
+            if (document.isEncrypted()) {
+                // Only documents without a user password get this far. An incremental update
+                // would have to be encrypted too, so these are rewritten without security.
+                document.setAllSecurityToBeRemoved(true);
+            }
+
+            // A signature placed on several pages is embedded once, and so is each icon
+            Map<Bitmap, PDImageXObject> images = new IdentityHashMap<>();
+            Map<VectorIcon, PDFormXObject> icons = new IdentityHashMap<>();
+            int done = 0;
+            for (PageAnnotations annotations : pages) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedIOException("Export cancelled");
+                }
+                if (!annotations.isEmpty() && annotations.pageIndex < document.getNumberOfPages()) {
+                    PDPage page = document.getPage(annotations.pageIndex);
+                    writePage(document, page, annotations, images, icons);
+                    if (incremental) {
+                        markForIncrementalUpdate(document, page);
+                    }
+                }
+                if (progressListener != null) {
+                    progressListener.onPageExported(++done, pages.size());
+                }
+            }
+
+            if (incremental) {
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(output))) {
+                    document.saveIncremental(out);
+                }
+            } else {
+                document.save(output);
+            }
+        }
+    }
+
+    /**
+     * An incremental save only writes objects flagged as updated, and only finds them by
+     * walking flagged objects down from the catalog. Flags the edited page, the page tree
+     * above it and whatever appending a content stream may have changed: the /Contents array
+     * and the (possibly inherited) resource dictionaries. New objects hanging off these are
+     * written automatically.
+     */
+    private static void markForIncrementalUpdate(PDDocument document, PDPage page) {
+        document.getDocumentCatalog().getCOSObject().setNeedToBeUpdated(true);
+
+        COSDictionary pageDict = page.getCOSObject();
+        for (COSDictionary node = pageDict; node != null; node = node.getCOSDictionary(COSName.PARENT)) {
+            node.setNeedToBeUpdated(true);
+        }
+
+        markUpdated(pageDict.getDictionaryObject(COSName.CONTENTS));
+
+        PDResources resources = page.getResources();
+        if (resources != null) {
+            COSDictionary resourcesDict = resources.getCOSObject();
+            resourcesDict.setNeedToBeUpdated(true);
+            markUpdated(resourcesDict.getDictionaryObject(COSName.FONT));
+            markUpdated(resourcesDict.getDictionaryObject(COSName.XOBJECT));
+            markUpdated(resourcesDict.getDictionaryObject(COSName.EXT_G_STATE));
+        }
+    }
+
+    private static void markUpdated(COSBase object) {
+        if (object instanceof COSUpdateInfo) {
+            ((COSUpdateInfo) object).setNeedToBeUpdated(true);
+        }
+    }
+
+    private void writePage(PDDocument document, PDPage page, PageAnnotations annotations,
+                           Map<Bitmap, PDImageXObject> images, Map<VectorIcon, PDFormXObject> icons)
+            throws IOException {
+        try (PDPageContentStream stream = new PDPageContentStream(document, page,
+                PDPageContentStream.AppendMode.APPEND, true, true)) {
+            stream.saveGraphicsState();
+            // Everything below is drawn in the page view's pixel coordinates
+            stream.transform(viewToPage(page, annotations.viewWidth, annotations.viewHeight));
+
+            for (PageAnnotations.Stroke stroke : annotations.strokes) {
+                writeStroke(stream, stroke);
+            }
+            for (PageAnnotations.Overlay overlay : annotations.overlays) {
+                stream.saveGraphicsState();
+                stream.transform(toPdfMatrix(overlay.transform));
+                if (overlay instanceof PageAnnotations.Shape) {
+                    writeShape(stream, (PageAnnotations.Shape) overlay);
+                } else if (overlay instanceof PageAnnotations.Text) {
+                    writeText(stream, (PageAnnotations.Text) overlay);
+                } else if (overlay instanceof PageAnnotations.Icon) {
+                    writeIcon(document, stream, (PageAnnotations.Icon) overlay, icons);
+                } else if (overlay instanceof PageAnnotations.Image) {
+                    writeImage(document, stream, (PageAnnotations.Image) overlay, images);
+                }
+                stream.restoreGraphicsState();
+            }
+            stream.restoreGraphicsState();
+        }
+    }
+
+    /**
+     * Maps page view pixels (origin top-left, y down) to PDF user space (origin bottom-left,
+     * y up) for the crop box PdfRenderer displayed, honouring the page's /Rotate.
+     */
+    static Matrix viewToPage(PDPage page, int viewWidth, int viewHeight) {
+        PDRectangle box = page.getCropBox();
+        int rotation = ((page.getRotation() % 360) + 360) % 360;
+        boolean sideways = rotation == 90 || rotation == 270;
+        float sx = (sideways ? box.getHeight() : box.getWidth()) / viewWidth;
+        float sy = (sideways ? box.getWidth() : box.getHeight()) / viewHeight;
+
+        switch (rotation) {
+            case 90:
+                return new Matrix(0, sx, sy, 0, box.getLowerLeftX(), box.getLowerLeftY());
+            case 180:
+                return new Matrix(-sx, 0, 0, sy, box.getUpperRightX(), box.getLowerLeftY());
+            case 270:
+                return new Matrix(0, -sx, -sy, 0, box.getUpperRightX(), box.getUpperRightY());
+            default:
+                return new Matrix(sx, 0, 0, -sy, box.getLowerLeftX(), box.getUpperRightY());
+        }
+    }
+
+    static Matrix toPdfMatrix(android.graphics.Matrix matrix) {
+        float[] v = new float[9];
+        matrix.getValues(v);
+        return new Matrix(v[android.graphics.Matrix.MSCALE_X], v[android.graphics.Matrix.MSKEW_Y],
+                v[android.graphics.Matrix.MSKEW_X], v[android.graphics.Matrix.MSCALE_Y],
+                v[android.graphics.Matrix.MTRANS_X], v[android.graphics.Matrix.MTRANS_Y]);
+    }
+
+    private void writeStroke(PDPageContentStream stream, PageAnnotations.Stroke stroke) throws IOException {
+        float[] curves = stroke.curves;
+        stream.saveGraphicsState();
+        setColor(stream, stroke.color, true);
+        stream.setLineWidth(stroke.width);
+        stream.setLineCapStyle(1);  // Round, like the on-screen Paint
+        stream.setLineJoinStyle(1);
+
+        stream.moveTo(stroke.startX, stroke.startY);
+        if (curves.length == 0) {
+            // A single tap still leaves a dot
+            stream.lineTo(stroke.startX, stroke.startY);
+        }
+        for (int i = 0; i + 5 < curves.length; i += 6) {
+            stream.curveTo(curves[i], curves[i + 1], curves[i + 2], curves[i + 3], curves[i + 4], curves[i + 5]);
+        }
+        stream.stroke();
+        stream.restoreGraphicsState();
+    }
+
+    private void writeShape(PDPageContentStream stream, PageAnnotations.Shape shape) throws IOException {
+        RectF r = shape.bounds;
+        setColor(stream, shape.color, true);
+        stream.setLineWidth(shape.strokeWidth);
+
+        switch (shape.type) {
+            case RECTANGLE:
+                stream.addRect(r.left, r.top, r.width(), r.height());
+                break;
+            case CIRCLE:
+                float radius = Math.min(r.width(), r.height()) / 2f;
+                addCircle(stream, r.left + radius, r.top + radius, radius);
+                break;
+            case LINE:
+                stream.moveTo(r.left, r.bottom);
+                stream.lineTo(r.right, r.top);
+                break;
+        }
+        stream.stroke();
+    }
+
+    private static void addCircle(PDPageContentStream stream, float cx, float cy, float r) throws IOException {
+        float k = r * CIRCLE_KAPPA;
+        stream.moveTo(cx + r, cy);
+        stream.curveTo(cx + r, cy + k, cx + k, cy + r, cx, cy + r);
+        stream.curveTo(cx - k, cy + r, cx - r, cy + k, cx - r, cy);
+        stream.curveTo(cx - r, cy - k, cx - k, cy - r, cx, cy - r);
+        stream.curveTo(cx + k, cy - r, cx + r, cy - k, cx + r, cy);
+        stream.closePath();
+    }
+
+    private void writeText(PDPageContentStream stream, PageAnnotations.Text text) throws IOException {
+        if (text.backgroundColor != 0) {
+            RectF r = text.bounds;
+            // Its own graphics state, so a translucent fill doesn't leave the text translucent too
+            stream.saveGraphicsState();
+            setColor(stream, text.backgroundColor, false);
+            stream.addRect(r.left, r.top, r.width(), r.height());
+            stream.fill();
+            stream.restoreGraphicsState();
+        }
+
+        PDType1Font font = font(text.bold);
+        float size = text.textSizePx;
+        setColor(stream, text.color, false);
+
+        for (PageAnnotations.TextLine line : text.lines) {
+            // Stretch Helvetica to the width Android laid the line out at
+            float naturalWidth = font.getStringWidth(line.text) / 1000f * size;
+            float stretch = naturalWidth > 0 ? line.width / naturalWidth : 1f;
+
+            stream.beginText();
+            stream.setFont(font, size);
+            // Flip y back, the view coordinates above run downwards
+            stream.setTextMatrix(new Matrix(stretch, 0, 0, -1, line.x, line.baseline));
+            stream.showText(line.text);
+            stream.endText();
+
+            float thickness = Math.max(1f, size * DECORATION_THICKNESS);
+            if (text.underline) {
+                stream.addRect(line.x, line.baseline + size * UNDERLINE_OFFSET, line.width, thickness);
+                stream.fill();
+            }
+            if (text.strikethrough) {
+                stream.addRect(line.x, line.baseline + size * STRIKE_OFFSET, line.width, thickness);
+                stream.fill();
+            }
+        }
+    }
+
+    private void writeImage(PDDocument document, PDPageContentStream stream, PageAnnotations.Image image,
+                            Map<Bitmap, PDImageXObject> images) throws IOException {
+        PDImageXObject xObject = images.get(image.bitmap);
+        if (xObject == null) {
+            xObject = LosslessFactory.createFromImage(document, image.bitmap);
+            images.put(image.bitmap, xObject);
+        }
+        RectF r = image.bounds;
+        // Images fill the unit square bottom-up, so flip it into the y-down view space
+        stream.drawImage(xObject, new Matrix(r.width(), 0, 0, -r.height(), r.left, r.bottom));
+    }
+
+    private void writeIcon(PDDocument document, PDPageContentStream stream, PageAnnotations.Icon overlay,
+                           Map<VectorIcon, PDFormXObject> icons) throws IOException {
+        VectorIcon icon = overlay.icon;
+        PDFormXObject form = icons.get(icon);
+        if (form == null) {
+            form = createIconForm(document, icon);
+            icons.put(icon, form);
+        }
+        RectF r = overlay.bounds;
+        stream.transform(new Matrix(r.width() / icon.viewportWidth, 0, 0, r.height() / icon.viewportHeight,
+                r.left, r.top));
+        stream.drawForm(form);
+    }
+
+    // The icon's paths in its own viewport coordinates, as a form every placement refers to
+    private static PDFormXObject createIconForm(PDDocument document, VectorIcon icon) throws IOException {
+        PDFormXObject form = new PDFormXObject(document);
+        form.setResources(new PDResources());
+        form.setBBox(new PDRectangle(icon.viewportWidth, icon.viewportHeight));
+        try (PDPageContentStream stream = new PDPageContentStream(document, form,
+                form.getStream().createOutputStream(COSName.FLATE_DECODE))) {
+            for (VectorIcon.FilledPath filled : icon.paths) {
+                // Each path's colour and alpha stay inside its own save/restore
+                stream.saveGraphicsState();
+                setColor(stream, filled.color, false);
+                float[] p = filled.points;
+                int i = 0;
+                for (byte verb : filled.verbs) {
+                    switch (verb) {
+                        case VectorIcon.MOVE:
+                            stream.moveTo(p[i], p[i + 1]);
+                            i += 2;
+                            break;
+                        case VectorIcon.LINE:
+                            stream.lineTo(p[i], p[i + 1]);
+                            i += 2;
+                            break;
+                        case VectorIcon.CUBIC:
+                            stream.curveTo(p[i], p[i + 1], p[i + 2], p[i + 3], p[i + 4], p[i + 5]);
+                            i += 6;
+                            break;
+                        case VectorIcon.CLOSE:
+                            stream.closePath();
+                            break;
+                    }
+                }
+                stream.fill();
+                stream.restoreGraphicsState();
+            }
+        }
+        return form;
+    }
+
+    private static void setColor(PDPageContentStream stream, int color, boolean stroking) throws IOException {
+        float red = Color.red(color) / 255f;
+        float green = Color.green(color) / 255f;
+        float blue = Color.blue(color) / 255f;
+        if (stroking) {
+            stream.setStrokingColor(red, green, blue);
+        } else {
+            stream.setNonStrokingColor(red, green, blue);
+        }
+
+        int alpha = Color.alpha(color);
+        if (alpha < 255) {
+            PDExtendedGraphicsState state = new PDExtendedGraphicsState();
+            state.setStrokingAlphaConstant(alpha / 255f);
+            state.setNonStrokingAlphaConstant(alpha / 255f);
+            stream.setGraphicsStateParameters(state);
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.mukesh.pdfly.pdfrenderer.helper;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import com.mukesh.pdfly.pdfrenderer.model.AnnotationDocument;
+import com.mukesh.pdfly.pdfrenderer.model.AnnotationFile;
+import com.mukesh.pdfly.pdfrenderer.model.AnnotationJournal;
+import com.mukesh.pdfly.pdfrenderer.model.AnnotationPage;
+import com.mukesh.pdfly.pdfrenderer.model.ElementModel;
+import com.mukesh.pdfly.pdfrenderer.model.SignatureModel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps each document's unsaved edits in {@code filesDir/annotations/<fingerprint>.pdfly}, so
+ * an editor closed without saving, or killed in the background, opens again with them in
+ * place. Keyed by {@link DocumentFingerprint} rather than URI, which may not survive.
+ *
+ * Between saves, each edit is also appended to an {@link AnnotationJournal} next to the file,
+ * so a crash loses at most the last {@link #SYNC_DELAY_MS} of work. Appends are buffered and
+ * synced to disk together rather than once per edit. Writing the file starts a new journal.
+ *
+ * All file work runs on one background thread. Callbacks arrive on the main thread.
+ */
+public class AnnotationStore {
+
+    private static final String TAG = "AnnotationStore";
+    private static final String DIR_NAME = "annotations";
+    private static final String EXTENSION = ".pdfly";
+    private static final String JOURNAL_EXTENSION = ".pdfly-journal";
+    // How long appended records may sit in the page cache before they are synced
+    private static final long SYNC_DELAY_MS = 1000;
+
+    public interface LoadCallback {
+        // document is null if nothing was stored for the file
+        void onLoaded(AnnotationDocument document, Map<String, Bitmap> images);
+    }
+
+    private static AnnotationStore instance;
+
+    private final Context appContext;
+    private final File dir;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+            runnable -> new Thread(runnable, "annotation-store"));
+    // Only touched on the store thread
+    private final Map<Uri, String> fingerprints = new HashMap<>();
+    private Uri journalSource;
+    private FileOutputStream journalOut;
+    private boolean syncScheduled;
+
+    public static synchronized AnnotationStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new AnnotationStore(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private AnnotationStore(Context appContext) {
+        this.appContext = appContext;
+        this.dir = new File(appContext.getFilesDir(), DIR_NAME);
+    }
+
+    public void load(Uri source, LoadCallback callback) {
+        executor.execute(() -> {
+            AnnotationDocument document = null;
+            Map<String, byte[]> encodedImages = new HashMap<>();
+            File file = fileFor(source);
+            if (file != null && file.exists()) {
+                try {
+                    document = AnnotationFile.read(file, encodedImages);
+                } catch (IOException | RuntimeException e) {
+                    Log.w(TAG, "Dropping unreadable " + file.getName(), e);
+                    file.delete();
+                    document = null;
+                    encodedImages.clear();
+                }
+            }
+
+            // Edits made after the file was written, if the editor didn't get to write it again
+            if (source.equals(journalSource)) {
+                closeJournal();
+            }
+            File journal = file != null ? journalFor(file) : null;
+            if (journal != null && journal.exists()) {
+                AnnotationDocument replayed = document != null ? document : new AnnotationDocument();
+                try {
+                    if (AnnotationJournal.replay(journal, replayed, encodedImages) > 0) {
+                        document = replayed;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Whatever was applied before the bad record stays
+                    Log.w(TAG, "Stopped replaying " + journal.getName(), e);
+                    document = replayed;
+                }
+            }
+
+            Map<String, Bitmap> images = new HashMap<>();
+            for (Map.Entry<String, byte[]> image : encodedImages.entrySet()) {
+                byte[] bytes = image.getValue();
+                Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+                if (bitmap != null) {
+                    images.put(image.getKey(), bitmap);
+                }
+            }
+            if (document != null && document.isEmpty()) {
+                document = null;
+            }
+
+            AnnotationDocument result = document;
+            mainHandler.post(() -> callback.onLoaded(result, images));
+        });
+    }
+
+    /**
+     * Stores {@code document}, or forgets the file if it is empty. Must be called on the main
+     * thread; the pages are encoded before it returns, so the caller may keep editing.
+     */
+    public void save(Uri source, AnnotationDocument document, Map<String, Bitmap> images) {
+        SortedMap<Integer, byte[]> pages = new TreeMap<>();
+        // Only the images signatures still on a page refer to
+        Map<String, Bitmap> imageSnapshot = new LinkedHashMap<>();
+        for (AnnotationPage page : document.getPages()) {
+            if (page.isEmpty()) continue;
+            pages.put(page.pageIndex, AnnotationFile.encodePage(page));
+            for (ElementModel element : page.getElements()) {
+                if (element instanceof SignatureModel) {
+                    String key = ((SignatureModel) element).imageKey;
+                    Bitmap image = images.get(key);
+                    if (image != null) {
+                        imageSnapshot.put(key, image);
+                    }
+                }
+            }
+        }
+        if (pages.isEmpty()) {
+            delete(source);
+            return;
+        }
+
+        executor.execute(() -> {
+            File file = fileFor(source);
+            if (file == null) return;
+            try {
+                Map<String, byte[]> encodedImages = new LinkedHashMap<>();
+                for (Map.Entry<String, Bitmap> image : imageSnapshot.entrySet()) {
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    image.getValue().compress(Bitmap.CompressFormat.PNG, 100, bytes);
+                    encodedImages.put(image.getKey(), bytes.toByteArray());
+                }
+                if (!dir.exists() && !dir.mkdirs()) {
+                    throw new IOException("Unable to create " + dir);
+                }
+                AnnotationFile.write(file, pages, encodedImages);
+                // Everything journaled so far is in the file now
+                if (source.equals(journalSource)) {
+                    closeJournal();
+                }
+                deleteFile(journalFor(file));
+            } catch (IOException e) {
+                Log.w(TAG, "Failed to store annotations", e);
+            }
+        });
+    }
+
+    /**
+     * Appends a record from {@link AnnotationJournal} to the document's journal. Records are
+     * written in the order they are appended, whichever thread they are encoded on.
+     */
+    public void append(Uri source, byte[] record) {
+        executor.execute(() -> writeJournal(source, record));
+    }
+
+    /** Journals a signature image, encoded off the main thread. */
+    public void appendImage(Uri source, String key, Bitmap image) {
+        executor.execute(() -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            image.compress(Bitmap.CompressFormat.PNG, 100, bytes);
+            writeJournal(source, AnnotationJournal.image(key, bytes.toByteArray()));
+        });
+    }
+
+    /** Forgets the stored edits, e.g. once they have been saved into a PDF or discarded. */
+    public void delete(Uri source) {
+        executor.execute(() -> {
+            if (source.equals(journalSource)) {
+                closeJournal();
+            }
+            File file = fileFor(source);
+            if (file != null) {
+                deleteFile(file);
+                deleteFile(journalFor(file));
+            }
+        });
+    }
+
+    // Runs on the store thread
+    private void writeJournal(Uri source, byte[] record) {
+        try {
+            if (!source.equals(journalSource)) {
+                closeJournal();
+                File file = fileFor(source);
+                if (file == null) return;
+                if (!dir.exists() && !dir.mkdirs()) {
+                    throw new IOException("Unable to create " + dir);
+                }
+                File journal = journalFor(file);
+                boolean fresh = !journal.exists() || journal.length() == 0;
+                journalOut = new FileOutputStream(journal, true);
+                journalSource = source;
+                if (fresh) {
+                    journalOut.write(AnnotationJournal.header());
+                }
+            }
+            journalOut.write(record);
+            if (!syncScheduled) {
+                syncScheduled = true;
+                executor.schedule(this::syncJournal, SYNC_DELAY_MS, TimeUnit.MILLISECONDS);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to journal edit", e);
+            closeJournal();
+        }
+    }
+
+    // Runs on the store thread. One sync covers every record appended since the last one.
+    private void syncJournal() {
+        syncScheduled = false;
+        if (journalOut == null) return;
+        try {
+            journalOut.getFD().sync();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to sync journal", e);
+        }
+    }
+
+    // Runs on the store thread
+    private void closeJournal() {
+        if (journalOut == null) return;
+        try {
+            journalOut.getFD().sync();
+            journalOut.close();
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to close journal", e);
+        }
+        journalOut = null;
+        journalSource = null;
+    }
+
+    private static File journalFor(File file) {
+        String name = file.getName();
+        return new File(file.getParentFile(),
+                name.substring(0, name.length() - EXTENSION.length()) + JOURNAL_EXTENSION);
+    }
+
+    private static void deleteFile(File file) {
+        if (file.exists() && !file.delete()) {
+            Log.w(TAG, "Failed to delete " + file);
+        }
+    }
+
+    // Runs on the store thread. Null if the source can't be read.
+    private File fileFor(Uri source) {
+        String fingerprint = fingerprints.get(source);
+        if (fingerprint == null) {
+            try (ParcelFileDescriptor pfd = PdfRendererHelper.openDescriptor(appContext, source)) {
+                fingerprint = DocumentFingerprint.compute(pfd);
+            } catch (IOException | RuntimeException e) {
+                Log.w(TAG, "No fingerprint, annotations not stored", e);
+                return null;
+            }
+            fingerprints.put(source, fingerprint);
+        }
+        return new File(dir, fingerprint + EXTENSION);
+    }
+}
@@ -0,0 +1,151 @@
+package com.mukesh.pdfly.pdfrenderer.helper;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Process-wide pool of mutable bitmaps for page renders, tiles and export rasters, so scrolling
+ * and saving stop allocating (and garbage collecting) a new native buffer for every page.
+ *
+ * A request is served by an exact size/config match first, then by any pooled bitmap whose
+ * buffer is big enough but not wastefully so, reconfigured in place. The pool holds at most
+ * {@code maxBytes}; the oldest bitmaps are recycled when it is full. Thread-safe.
+ */
+public class BitmapPool {
+
+    // A pooled buffer may be at most this many times larger than the bitmap asked for
+    private static final int MAX_SIZE_MULTIPLE = 2;
+
+    private static BitmapPool instance;
+
+    private final long maxBytes;
+    // Allocation size -> bitmaps with that buffer size
+    private final TreeMap<Integer, ArrayDeque<Bitmap>> bySize = new TreeMap<>();
+    // Insertion order, oldest first, for eviction
+    private final LinkedHashSet<Bitmap> lru = new LinkedHashSet<>();
+    private long currentBytes = 0;
+
+    public static synchronized BitmapPool getInstance() {
+        if (instance == null) {
+            instance = new BitmapPool(Runtime.getRuntime().maxMemory() / 8);
+        }
+        return instance;
+    }
+
+    public BitmapPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /** Returns a transparent bitmap of exactly this size and config, reused when possible. */
+    public Bitmap get(int width, int height, Bitmap.Config config) {
+        Bitmap bitmap = take(width, height, config);
+        if (bitmap == null) {
+            return Bitmap.createBitmap(width, height, config);
+        }
+        bitmap.eraseColor(Color.TRANSPARENT);
+        return bitmap;
+    }
+
+    private synchronized Bitmap take(int width, int height, Bitmap.Config config) {
+        int needed = width * height * bytesPerPixel(config);
+
+        Map.Entry<Integer, ArrayDeque<Bitmap>> entry = bySize.ceilingEntry(needed);
+        if (entry != null && entry.getKey() <= (long) needed * MAX_SIZE_MULTIPLE) {
+            Bitmap match = removeMatching(entry.getValue(), width, height, config);
+            if (match == null) {
+                // Nothing with the same shape in this size class; reconfigure the first one
+                match = entry.getValue().pollFirst();
+                match.reconfigure(width, height, config);
+            }
+            if (entry.getValue().isEmpty()) {
+                bySize.remove(entry.getKey());
+            }
+            lru.remove(match);
+            currentBytes -= match.getAllocationByteCount();
+            return match;
+        }
+        return null;
+    }
+
+    private static Bitmap removeMatching(ArrayDeque<Bitmap> bitmaps, int width, int height, Bitmap.Config config) {
+        Iterator<Bitmap> iterator = bitmaps.iterator();
+        while (iterator.hasNext()) {
+            Bitmap candidate = iterator.next();
+            if (candidate.getWidth() == width && candidate.getHeight() == height && candidate.getConfig() == config) {
+                iterator.remove();
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Hands a bitmap back for reuse. The caller must not touch it afterwards, and nothing on
+     * screen may still be drawing it. Bitmaps the pool can't reuse are recycled.
+     */
+    public void put(Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) return;
+        if (!bitmap.isMutable() || bitmap.getConfig() == null || bitmap.getAllocationByteCount() > maxBytes) {
+            bitmap.recycle();
+            return;
+        }
+
+        synchronized (this) {
+            if (!lru.add(bitmap)) return; // Already pooled
+            int size = bitmap.getAllocationByteCount();
+            ArrayDeque<Bitmap> bucket = bySize.get(size);
+            if (bucket == null) {
+                bucket = new ArrayDeque<>();
+                bySize.put(size, bucket);
+            }
+            bucket.addLast(bitmap);
+            currentBytes += size;
+            trimTo(maxBytes);
+        }
+    }
+
+    /** Recycles every pooled bitmap, e.g. when the system is low on memory. */
+    public synchronized void clear() {
+        trimTo(0);
+    }
+
+    /** Recycles the least recently pooled bitmaps until the pool is at most half full. */
+    public synchronized void trimToHalf() {
+        trimTo(maxBytes / 2);
+    }
+
+    private void trimTo(long targetBytes) {
+        Iterator<Bitmap> oldest = lru.iterator();
+        while (currentBytes > targetBytes && oldest.hasNext()) {
+            Bitmap bitmap = oldest.next();
+            oldest.remove();
+
+            int size = bitmap.getAllocationByteCount();
+            ArrayDeque<Bitmap> bucket = bySize.get(size);
+            bucket.remove(bitmap);
+            if (bucket.isEmpty()) {
+                bySize.remove(size);
+            }
+            currentBytes -= size;
+            bitmap.recycle();
+        }
+    }
+
+    private static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.mukesh.pdfly.pdfrenderer.helper;
+
+import android.os.ParcelFileDescriptor;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Cheap identity for a PDF file, used to key caches across editor sessions. Hashing the whole
+ * file would cost as much as rendering it, so only the length and the first and last 64 KB are
+ * hashed; PDF writers put the header, xref table and trailer ID in exactly those places.
+ */
+public class DocumentFingerprint {
+
+    private static final int SAMPLE_BYTES = 64 * 1024;
+
+    /** Reads with positional reads only, so the descriptor's offset is left alone. */
+    public static String compute(ParcelFileDescriptor pfd) throws IOException {
+        // Not closed on purpose: closing the stream would close the caller's descriptor
+        FileChannel channel = new FileInputStream(pfd.getFileDescriptor()).getChannel();
+        long size = channel.size();
+
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(Long.toString(size).getBytes());
+
+        ByteBuffer buffer = ByteBuffer.allocate(SAMPLE_BYTES);
+        digestRange(channel, 0, Math.min(size, SAMPLE_BYTES), buffer, digest);
+        if (size > SAMPLE_BYTES) {
+            long tailStart = Math.max(SAMPLE_BYTES, size - SAMPLE_BYTES);
+            digestRange(channel, tailStart, size, buffer, digest);
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static void digestRange(FileChannel channel, long from, long to, ByteBuffer buffer,
+                                    MessageDigest digest) throws IOException {
+        long position = from;
+        while (position < to) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), to - position));
+            int read = channel.read(buffer, position);
+            if (read <= 0) break;
+            digest.update(buffer.array(), 0, read);
+            position += read;
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.mukesh.pdfly.pdfrenderer.helper;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.util.LruCache;
+
+import java.util.IdentityHashMap;
+
+/**
+ * In-memory LRU cache of full-quality page renders, shared by every editor session so that
+ * scrolling back, or reopening the same document, doesn't render a page twice. Keys combine
+ * the document fingerprint, the page index and the render width.
+ *
+ * Bitmaps handed out by {@link #acquire} or {@link #putAndAcquire} are marked in use and must
+ * be given back with {@link #release}. An evicted bitmap goes back to the {@link BitmapPool}
+ * only once nothing is using it any more. Thread-safe.
+ */
+public class PageBitmapCache {
+
+    // Share of the app's memory class the cache may fill
+    private static final int MEMORY_CLASS_DIVISOR = 4;
+
+    private static PageBitmapCache instance;
+
+    private final LruCache<String, Bitmap> cache;
+    // Bitmaps currently in the cache, so release() knows whether one was evicted
+    private final IdentityHashMap<Bitmap, String> cachedKeys = new IdentityHashMap<>();
+    private final IdentityHashMap<Bitmap, Integer> useCounts = new IdentityHashMap<>();
+
+    public static synchronized PageBitmapCache getInstance(Context context) {
+        if (instance == null) {
+            ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+            int maxBytes = activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CLASS_DIVISOR;
+            instance = new PageBitmapCache(maxBytes);
+        }
+        return instance;
+    }
+
+    public PageBitmapCache(int maxBytes) {
+        cache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String key, Bitmap oldValue, Bitmap newValue) {
+                // Always runs inside one of the synchronized methods below
+                cachedKeys.remove(oldValue);
+                if (!useCounts.containsKey(oldValue)) {
+                    BitmapPool.getInstance().put(oldValue);
+                }
+            }
+        };
+    }
+
+    public static String key(String fingerprint, int pageIndex, int renderWidth) {
+        return fingerprint + "#" + pageIndex + "@" + renderWidth;
+    }
+
+    /** Returns the cached page and marks it in use, or null on a miss. */
+    public synchronized Bitmap acquire(String key) {
+        Bitmap bitmap = cache.get(key);
+        if (bitmap != null) {
+            markInUse(bitmap);
+        }
+        return bitmap;
+    }
+
+    /** Caches a freshly rendered page that the caller is about to show. */
+    public synchronized void putAndAcquire(String key, Bitmap bitmap) {
+        markInUse(bitmap);
+        cachedKeys.put(bitmap, key);
+        cache.put(key, bitmap);
+    }
+
+    /** The caller stopped showing the bitmap and must not touch it afterwards. */
+    public synchronized void release(Bitmap bitmap) {
+        Integer count = useCounts.get(bitmap);
+        if (count == null) return;
+        if (count > 1) {
+            useCounts.put(bitmap, count - 1);
+            return;
+        }
+        useCounts.remove(bitmap);
+        if (!cachedKeys.containsKey(bitmap)) {
+            // Evicted while on screen
+            BitmapPool.getInstance().put(bitmap);
+        }
+    }
+
+    /** Drops every cached page; pages on screen stay valid until released. */
+    public synchronized void clear() {
+        cache.evictAll();
+    }
+
+    /** Drops the least recently used pages until the cache is at most half full. */
+    public synchronized void trimToHalf() {
+        cache.trimToSize(cache.maxSize() / 2);
+    }
+
+    private void markInUse(Bitmap bitmap) {
+        Integer count = useCounts.get(bitmap);
+        useCounts.put(bitmap, count == null ? 1 : count + 1);
+    }
+}
@@ -0,0 +1,192 @@
+package com.mukesh.pdfly.pdfrenderer.helper;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Disk cache under {@code cacheDir/page_cache} with a compressed preview of each page and the
+ * page sizes of each document, keyed by document fingerprint and render width. A document
+ * opened again can lay out and show its pages from here before PdfRenderer is ready.
+ *
+ * All file work runs on one background thread. When the directory grows past
+ * {@link #MAX_BYTES}, the least recently used files are deleted.
+ */
+public class PageDiskCache {
+
+    private static final String TAG = "PageDiskCache";
+    private static final String DIR_NAME = "page_cache";
+    private static final long MAX_BYTES = 50L * 1024 * 1024;
+    // Trim down to this so every write past the limit doesn't trigger another trim
+    private static final long TRIM_TO_BYTES = MAX_BYTES * 3 / 4;
+    private static final int JPEG_QUALITY = 80;
+
+    public interface ReadCallback<T> {
+        // Null on a miss
+        void onRead(T result);
+    }
+
+    private static PageDiskCache instance;
+
+    private final File dir;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(
+            runnable -> new Thread(runnable, "page-disk-cache"));
+
+    // Only touched on the cache thread; -1 until the directory has been measured
+    private long totalBytes = -1;
+
+    public static synchronized PageDiskCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new PageDiskCache(new File(context.getCacheDir(), DIR_NAME));
+        }
+        return instance;
+    }
+
+    private PageDiskCache(File dir) {
+        this.dir = dir;
+    }
+
+    /** Page heights saved by {@link #writePageHeights}, or null. Blocks; call off the main thread. */
+    public int[] readPageHeights(String fingerprint, int renderWidth) {
+        File file = metaFile(fingerprint, renderWidth);
+        if (!file.exists()) return null;
+
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            int[] heights = new int[in.readInt()];
+            for (int i = 0; i < heights.length; i++) {
+                heights[i] = in.readInt();
+            }
+            file.setLastModified(System.currentTimeMillis());
+            return heights;
+        } catch (IOException e) {
+            Log.w(TAG, "Dropping unreadable " + file.getName(), e);
+            file.delete();
+            return null;
+        }
+    }
+
+    public void writePageHeights(String fingerprint, int renderWidth, int[] heights) {
+        int[] copy = Arrays.copyOf(heights, heights.length);
+        executor.execute(() -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + copy.length * 4);
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(copy.length);
+                for (int height : copy) {
+                    out.writeInt(height);
+                }
+            } catch (IOException e) {
+                return;
+            }
+            writeFile(metaFile(fingerprint, renderWidth), bytes.toByteArray());
+        });
+    }
+
+    /** Decodes the cached preview on the cache thread and delivers it on the main thread. */
+    public Future<?> readPreview(String fingerprint, int pageIndex, int renderWidth, ReadCallback<Bitmap> callback) {
+        return executor.submit(() -> {
+            File file = previewFile(fingerprint, pageIndex, renderWidth);
+            Bitmap preview = null;
+            if (file.exists()) {
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inPreferredConfig = Bitmap.Config.RGB_565;
+                // Mutable so it can go back into the BitmapPool
+                options.inMutable = true;
+                preview = BitmapFactory.decodeFile(file.getPath(), options);
+                if (preview != null) {
+                    file.setLastModified(System.currentTimeMillis());
+                } else {
+                    file.delete();
+                }
+            }
+            Bitmap result = preview;
+            mainHandler.post(() -> callback.onRead(result));
+        });
+    }
+
+    /**
+     * Compresses the preview on the calling thread, so the caller may reuse the bitmap as
+     * soon as this returns, and writes it in the background.
+     */
+    public void writePreview(String fingerprint, int pageIndex, int renderWidth, Bitmap preview) {
+        File file = previewFile(fingerprint, pageIndex, renderWidth);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        if (!preview.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, bytes)) return;
+        executor.execute(() -> writeFile(file, bytes.toByteArray()));
+    }
+
+    private void writeFile(File file, byte[] data) {
+        if (!dir.exists() && !dir.mkdirs()) return;
+        if (totalBytes < 0) {
+            totalBytes = directorySize();
+        }
+
+        long previousSize = file.length();
+        // Write next to the target and rename, so readers never see half a file
+        File temp = new File(dir, file.getName() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(data);
+        } catch (IOException e) {
+            Log.w(TAG, "Failed to write " + file.getName(), e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+
+        totalBytes += data.length - previousSize;
+        if (totalBytes > MAX_BYTES) {
+            trim();
+        }
+    }
+
+    private void trim() {
+        File[] files = dir.listFiles();
+        if (files == null) return;
+
+        Arrays.sort(files, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File file : files) {
+            if (totalBytes <= TRIM_TO_BYTES) break;
+            long size = file.length();
+            if (file.delete()) {
+                totalBytes -= size;
+            }
+        }
+    }
+
+    private long directorySize() {
+        long size = 0;
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                size += file.length();
+            }
+        }
+        return size;
+    }
+
+    private File metaFile(String fingerprint, int renderWidth) {
+        return new File(dir, fingerprint + "_" + renderWidth + ".meta");
+    }
+
+    private File previewFile(String fingerprint, int pageIndex, int renderWidth) {
+        return new File(dir, fingerprint + "_" + renderWidth + "_" + pageIndex + ".jpg");
+    }
+}
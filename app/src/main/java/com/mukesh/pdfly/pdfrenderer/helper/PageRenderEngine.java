@@ -0,0 +1,374 @@
+package com.mukesh.pdfly.pdfrenderer.helper;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.pdf.PdfRenderer;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import com.mukesh.pdfly.pdfrenderer.views.TiledPageView;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+
+/**
+ * Renders PDF pages on demand instead of all up front. Only the visible pages plus a
+ * prefetch window around them hold a bitmap; pages that scroll further away are released,
+ * so memory stays flat no matter how long the document is. Full renders also go into the
+ * shared {@link PageBitmapCache}, so pages scrolled back to, or shown again after reopening
+ * the same file, come straight from memory. Previews and page sizes are also kept on disk by
+ * {@link PageDiskCache}, so a reopened document shows up before PdfRenderer has finished opening.
+ *
+ * All rendering happens on a {@link PageRenderWorker}; this class itself is main-thread only.
+ */
+public class PageRenderEngine implements TiledPageView.TileSource {
+
+    public interface PageCallback extends PdfRendererHelper.OnPageRenderedListener {
+        void onDocumentOpened(int pageCount);
+
+        void onDocumentFailed(Exception error);
+
+        // Called before the page bitmap is recycled, so the view can drop its reference.
+        void onPageReleased(int pageIndex);
+    }
+
+    private static final int DEFAULT_PREFETCH_PAGES = 2;
+    // Extra pages kept beyond the prefetch window so small scrolls don't thrash renders
+    private static final int RELEASE_SLACK_PAGES = 2;
+    // Full renders wait until every page in the window has its preview
+    private static final int PRIORITY_FULL_OFFSET = 1000;
+    // Tiles are only requested for pages on screen, so they share the visible pages' priority
+    private static final int PRIORITY_TILE = 0;
+
+    private final Context appContext;
+    private final PageCallback callback;
+    private final int renderWidth;
+    private final PageRenderWorker worker = new PageRenderWorker();
+    private final PageBitmapCache pageCache;
+    private final PageDiskCache diskCache;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final SparseArray<Future<?>> pendingDiskReads = new SparseArray<>();
+    // Pages with no preview on disk, so scrolling doesn't look them up again
+    private final SparseBooleanArray diskMisses = new SparseBooleanArray();
+    private final SparseArray<PageRenderWorker.RenderTask<Bitmap>> pendingPreviews = new SparseArray<>();
+    private final SparseArray<PageRenderWorker.RenderTask<Bitmap>> pendingRenders = new SparseArray<>();
+
+    private int[] renderHeights = new int[0];
+    private Bitmap[] pageBitmaps = new Bitmap[0];
+    private int[] pageQualities = new int[0];
+    private int prefetchPages = DEFAULT_PREFETCH_PAGES;
+    private int firstVisible = 0;
+    private int lastVisible = -1;
+    private volatile boolean closed = false;
+    // Set on the worker before the page sizes are posted; null disables the page cache
+    private volatile String fingerprint;
+    private volatile boolean sizesFromDisk = false;
+    private boolean documentOpened = false;
+
+    public PageRenderEngine(Context context, PageCallback callback) {
+        this.appContext = context.getApplicationContext();
+        this.callback = callback;
+        this.renderWidth = context.getResources().getDisplayMetrics().widthPixels;
+        this.pageCache = PageBitmapCache.getInstance(context);
+        this.diskCache = PageDiskCache.getInstance(context);
+    }
+
+    public void open(Uri pdfUri) {
+        // A failed open makes the measure job below fail too, which reports it
+        worker.open(() -> {
+            ParcelFileDescriptor pfd = PdfRendererHelper.openDescriptor(appContext, pdfUri);
+            try {
+                fingerprint = DocumentFingerprint.compute(pfd);
+            } catch (IOException e) {
+                Log.w("PageRenderEngine", "No fingerprint, page cache disabled", e);
+            }
+
+            // Seen this file before: lay the pages out now, PdfRenderer can take a while to open
+            int[] cachedHeights = fingerprint != null ? diskCache.readPageHeights(fingerprint, renderWidth) : null;
+            if (cachedHeights != null) {
+                sizesFromDisk = true;
+                mainHandler.post(() -> onPageSizesKnown(cachedHeights));
+            }
+            return pfd;
+        }, null);
+
+        // Opening a page only parses its dictionary, so sizing every page is cheap
+        worker.submit(PageRenderWorker.PRIORITY_OPEN, renderer -> {
+            int[] heights = new int[renderer.getPageCount()];
+            for (int i = 0; i < heights.length; i++) {
+                try (PdfRenderer.Page page = renderer.openPage(i)) {
+                    heights[i] = PdfRendererHelper.getRenderHeight(page.getWidth(), page.getHeight(), renderWidth);
+                }
+            }
+            if (fingerprint != null && !sizesFromDisk) {
+                diskCache.writePageHeights(fingerprint, renderWidth, heights);
+            }
+            return heights;
+        }, new PageRenderWorker.ResultCallback<int[]>() {
+            @Override
+            public void onResult(int[] heights) {
+                onPageSizesKnown(heights);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                if (closed) return;
+                callback.onDocumentFailed(error);
+            }
+        });
+    }
+
+    private void onPageSizesKnown(int[] heights) {
+        if (closed || documentOpened) return;
+        documentOpened = true;
+        renderHeights = heights;
+        pageBitmaps = new Bitmap[heights.length];
+        pageQualities = new int[heights.length];
+        callback.onDocumentOpened(heights.length);
+    }
+
+    /** Number of pages rendered ahead of and behind the visible range. */
+    public void setPrefetchPages(int prefetchPages) {
+        this.prefetchPages = Math.max(0, prefetchPages);
+    }
+
+    public int getPageCount() {
+        return renderHeights.length;
+    }
+
+    public int getRenderHeight(int pageIndex) {
+        return renderHeights[pageIndex];
+    }
+
+    /** The page's current render, preview or full, or null while it has none. */
+    public Bitmap getPageBitmap(int pageIndex) {
+        return pageIndex < pageBitmaps.length ? pageBitmaps[pageIndex] : null;
+    }
+
+    /**
+     * Queues renders for [firstVisible - prefetch, lastVisible + prefetch], nearest to the
+     * viewport first. Every page gets a quick preview pass before any page gets its full
+     * render. Also cancels queued renders the user scrolled past and releases pages
+     * outside the release window.
+     */
+    public void onVisibleRangeChanged(int firstVisible, int lastVisible) {
+        if (closed || pageBitmaps.length == 0) return;
+        this.firstVisible = firstVisible;
+        this.lastVisible = lastVisible;
+
+        for (int i = 0; i < pageBitmaps.length; i++) {
+            if (pageBitmaps[i] != null && !isInKeepWindow(i)) {
+                releasePage(i);
+            }
+        }
+
+        int prefetchFrom = Math.max(0, firstVisible - prefetchPages);
+        int prefetchTo = Math.min(pageBitmaps.length - 1, lastVisible + prefetchPages);
+
+        cancelOutside(pendingDiskReads, prefetchFrom, prefetchTo);
+        cancelOutside(pendingPreviews, prefetchFrom, prefetchTo);
+        cancelOutside(pendingRenders, prefetchFrom, prefetchTo);
+
+        for (int i = prefetchFrom; i <= prefetchTo; i++) {
+            requestRender(i, distanceToViewport(i));
+        }
+    }
+
+    private static <T extends Future<?>> void cancelOutside(SparseArray<T> pending, int from, int to) {
+        for (int k = pending.size() - 1; k >= 0; k--) {
+            int pageIndex = pending.keyAt(k);
+            if (pageIndex < from || pageIndex > to) {
+                pending.valueAt(k).cancel(false);
+                pending.removeAt(k);
+            }
+        }
+    }
+
+    private static <T extends Future<?>> void cancelAll(SparseArray<T> pending) {
+        for (int k = 0; k < pending.size(); k++) {
+            pending.valueAt(k).cancel(false);
+        }
+        pending.clear();
+    }
+
+    private void requestRender(int pageIndex, int distance) {
+        if (pageBitmaps[pageIndex] != null && pageQualities[pageIndex] == PdfRendererHelper.QUALITY_FULL) return;
+
+        Bitmap cached = fingerprint != null ? pageCache.acquire(cacheKey(pageIndex)) : null;
+        if (cached != null) {
+            cancelPending(pendingPreviews, pageIndex);
+            cancelPending(pendingRenders, pageIndex);
+            showPage(pageIndex, cached, PdfRendererHelper.QUALITY_FULL);
+            return;
+        }
+
+        if (pageBitmaps[pageIndex] == null) {
+            readPreviewFromDisk(pageIndex);
+            // Queued either way; a preview read from disk first cancels it
+            schedule(pendingPreviews, pageIndex, distance,
+                    renderer -> renderPreview(renderer, pageIndex),
+                    PdfRendererHelper.QUALITY_PREVIEW);
+        }
+        schedule(pendingRenders, pageIndex, PRIORITY_FULL_OFFSET + distance,
+                renderer -> PdfRendererHelper.renderPage(renderer, pageIndex, renderWidth),
+                PdfRendererHelper.QUALITY_FULL);
+    }
+
+    private void readPreviewFromDisk(int pageIndex) {
+        if (fingerprint == null || diskMisses.get(pageIndex) || pendingDiskReads.get(pageIndex) != null) return;
+
+        Future<?> read = diskCache.readPreview(fingerprint, pageIndex, renderWidth, preview -> {
+            pendingDiskReads.remove(pageIndex);
+            if (preview == null) {
+                diskMisses.put(pageIndex, true);
+                return;
+            }
+            cancelPending(pendingPreviews, pageIndex);
+            onPageRenderFinished(pageIndex, preview, PdfRendererHelper.QUALITY_PREVIEW);
+        });
+        pendingDiskReads.put(pageIndex, read);
+    }
+
+    // Runs on the render worker
+    private Bitmap renderPreview(PdfRenderer renderer, int pageIndex) {
+        Bitmap preview = PdfRendererHelper.renderPagePreview(renderer, pageIndex, renderWidth);
+        if (fingerprint != null) {
+            diskCache.writePreview(fingerprint, pageIndex, renderWidth, preview);
+        }
+        return preview;
+    }
+
+    private void schedule(SparseArray<PageRenderWorker.RenderTask<Bitmap>> pending, int pageIndex, int priority,
+                          PageRenderWorker.RenderJob<Bitmap> job, int quality) {
+        PageRenderWorker.RenderTask<Bitmap> queued = pending.get(pageIndex);
+        if (queued != null) {
+            if (queued.isStarted() || queued.getPriority() == priority) return;
+            // Re-queue so the pages nearest the viewport still go first after a direction change
+            queued.cancel(false);
+        }
+
+        PageRenderWorker.RenderTask<Bitmap> task = worker.submit(priority, job,
+                bitmap -> onPageRenderFinished(pageIndex, bitmap, quality));
+        pending.put(pageIndex, task);
+    }
+
+    private void onPageRenderFinished(int pageIndex, Bitmap bitmap, int quality) {
+        boolean full = quality == PdfRendererHelper.QUALITY_FULL;
+        (full ? pendingRenders : pendingPreviews).remove(pageIndex);
+        if (bitmap == null) return;
+
+        Bitmap current = pageBitmaps[pageIndex];
+        // A preview is only useful while the page is still blank
+        boolean superseded = current != null && (!full || pageQualities[pageIndex] == PdfRendererHelper.QUALITY_FULL);
+        if (closed || superseded || !isInKeepWindow(pageIndex)) {
+            BitmapPool.getInstance().put(bitmap);
+            return;
+        }
+
+        if (full) {
+            cancelPending(pendingPreviews, pageIndex);
+            if (fingerprint != null) {
+                pageCache.putAndAcquire(cacheKey(pageIndex), bitmap);
+            }
+        }
+        showPage(pageIndex, bitmap, quality);
+    }
+
+    private void showPage(int pageIndex, Bitmap bitmap, int quality) {
+        Bitmap current = pageBitmaps[pageIndex];
+        int currentQuality = pageQualities[pageIndex];
+
+        pageBitmaps[pageIndex] = bitmap;
+        pageQualities[pageIndex] = quality;
+        callback.onPageRendered(bitmap, pageIndex, quality);
+
+        // The view has switched to the sharp bitmap, so the preview can go
+        if (current != null) {
+            giveBack(current, currentQuality);
+        }
+    }
+
+    // Full renders are owned by the page cache, previews only by this engine
+    private void giveBack(Bitmap bitmap, int quality) {
+        if (quality == PdfRendererHelper.QUALITY_FULL && fingerprint != null) {
+            pageCache.release(bitmap);
+        } else {
+            BitmapPool.getInstance().put(bitmap);
+        }
+    }
+
+    private String cacheKey(int pageIndex) {
+        return PageBitmapCache.key(fingerprint, pageIndex, renderWidth);
+    }
+
+    private static <T extends Future<?>> void cancelPending(SparseArray<T> pending, int pageIndex) {
+        T task = pending.get(pageIndex);
+        if (task != null) {
+            task.cancel(false);
+            pending.remove(pageIndex);
+        }
+    }
+
+    private int distanceToViewport(int pageIndex) {
+        if (pageIndex < firstVisible) return firstVisible - pageIndex;
+        if (pageIndex > lastVisible) return pageIndex - lastVisible;
+        return 0;
+    }
+
+    private boolean isInKeepWindow(int pageIndex) {
+        return distanceToViewport(pageIndex) <= prefetchPages + RELEASE_SLACK_PAGES;
+    }
+
+    private void releasePage(int pageIndex) {
+        Bitmap bitmap = pageBitmaps[pageIndex];
+        pageBitmaps[pageIndex] = null;
+        callback.onPageReleased(pageIndex);
+        giveBack(bitmap, pageQualities[pageIndex]);
+    }
+
+    @Override
+    public Future<?> requestTile(int pageIndex, int contentWidth, int contentHeight, float zoom,
+                                 int tileX, int tileY, int tileSize, TiledPageView.TileCallback tileCallback) {
+        return worker.submit(PRIORITY_TILE,
+                renderer -> PdfRendererHelper.renderTile(renderer, pageIndex, contentWidth, contentHeight,
+                        zoom, tileX, tileY, tileSize),
+                new PageRenderWorker.ResultCallback<Bitmap>() {
+                    @Override
+                    public void onResult(Bitmap tile) {
+                        if (closed) {
+                            if (tile != null) BitmapPool.getInstance().put(tile);
+                            return;
+                        }
+                        tileCallback.onTileRendered(tile);
+                    }
+
+                    @Override
+                    public void onError(Exception error) {
+                        PageRenderWorker.ResultCallback.super.onError(error);
+                        // Lets the view ask for the tile again on the next update
+                        if (!closed) tileCallback.onTileRendered(null);
+                    }
+                });
+    }
+
+    public void close() {
+        if (closed) return;
+        closed = true;
+
+        cancelAll(pendingDiskReads);
+        cancelAll(pendingPreviews);
+        cancelAll(pendingRenders);
+
+        for (int i = 0; i < pageBitmaps.length; i++) {
+            if (pageBitmaps[i] != null) {
+                releasePage(i);
+            }
+        }
+        worker.shutdown();
+    }
+}
@@ -0,0 +1,181 @@
+package com.mukesh.pdfly.pdfrenderer.helper;
+
+import android.graphics.pdf.PdfRenderer;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single background thread that owns the document's {@link PdfRenderer}. PdfRenderer is not
+ * thread-safe, so every openPage/render call goes through this worker. Jobs run in priority
+ * order (lowest value first) and each one returns a cancellable {@link RenderTask}; a task
+ * cancelled before it starts is dropped without touching the renderer.
+ */
+public class PageRenderWorker {
+
+    private static final String TAG = "PageRenderWorker";
+
+    // Opening the document always runs before any page work
+    public static final int PRIORITY_OPEN = Integer.MIN_VALUE;
+
+    public interface DescriptorSource {
+        ParcelFileDescriptor open() throws IOException;
+    }
+
+    public interface RenderJob<T> {
+        T run(PdfRenderer renderer) throws Exception;
+    }
+
+    /**
+     * Delivered on the main thread, and only if the task was not cancelled before then, even
+     * when it had already finished on the worker.
+     */
+    public interface ResultCallback<T> {
+        void onResult(T result);
+
+        default void onError(Exception error) {
+            Log.e(TAG, "Render job failed", error);
+        }
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final AtomicLong sequence = new AtomicLong();
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            1, 1, 0L, TimeUnit.MILLISECONDS,
+            new PriorityBlockingQueue<>(),
+            runnable -> new Thread(runnable, "pdf-render-worker"));
+
+    // Only touched on the worker thread
+    private ParcelFileDescriptor pfd;
+    private PdfRenderer renderer;
+
+    public RenderTask<Integer> open(DescriptorSource source, ResultCallback<Integer> callback) {
+        return enqueue(PRIORITY_OPEN, () -> {
+            pfd = source.open();
+            renderer = new PdfRenderer(pfd);
+            return renderer.getPageCount();
+        }, callback);
+    }
+
+    public <T> RenderTask<T> submit(int priority, RenderJob<T> job, ResultCallback<T> callback) {
+        return enqueue(priority, () -> {
+            if (renderer == null) {
+                throw new IllegalStateException("PdfRenderer is not open");
+            }
+            return job.run(renderer);
+        }, callback);
+    }
+
+    /**
+     * Drops every queued job and closes the renderer once the job currently running, if any,
+     * has finished. No more jobs can be submitted afterwards.
+     */
+    public void shutdown() {
+        for (Object queued : executor.getQueue().toArray()) {
+            ((RenderTask<?>) queued).cancel(false);
+        }
+        executor.getQueue().clear();
+        enqueue(PRIORITY_OPEN, () -> {
+            closeRenderer();
+            return null;
+        }, null);
+        executor.shutdown();
+    }
+
+    private void closeRenderer() {
+        if (renderer != null) {
+            renderer.close();
+            renderer = null;
+        }
+        if (pfd != null) {
+            try {
+                pfd.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            pfd = null;
+        }
+    }
+
+    private <T> RenderTask<T> enqueue(int priority, Callable<T> callable, ResultCallback<T> callback) {
+        RenderTask<T> task = new RenderTask<>(priority, sequence.getAndIncrement(), callable, callback, mainHandler);
+        executor.execute(task);
+        return task;
+    }
+
+    public static final class RenderTask<T> extends FutureTask<T> implements Comparable<RenderTask<?>> {
+        private final int priority;
+        private final long sequence;
+        private final ResultCallback<T> callback;
+        private final Handler mainHandler;
+        private volatile boolean started = false;
+        // Set by cancel() even once the task is done, which isCancelled() doesn't report
+        private volatile boolean cancelRequested = false;
+
+        RenderTask(int priority, long sequence, Callable<T> callable, ResultCallback<T> callback, Handler mainHandler) {
+            super(callable);
+            this.priority = priority;
+            this.sequence = sequence;
+            this.callback = callback;
+            this.mainHandler = mainHandler;
+        }
+
+        public int getPriority() {
+            return priority;
+        }
+
+        public boolean isStarted() {
+            return started;
+        }
+
+        @Override
+        public void run() {
+            started = true;
+            super.run();
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            cancelRequested = true;
+            return super.cancel(mayInterruptIfRunning);
+        }
+
+        @Override
+        protected void done() {
+            if (callback == null || isCancelled()) return;
+            // Checked again once on the main thread, in case the task was cancelled after it finished
+            try {
+                T result = get();
+                mainHandler.post(() -> {
+                    if (!cancelRequested) callback.onResult(result);
+                });
+            } catch (ExecutionException e) {
+                Exception cause = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                mainHandler.post(() -> {
+                    if (!cancelRequested) callback.onError(cause);
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public int compareTo(RenderTask<?> other) {
+            if (priority != other.priority) {
+                return Integer.compare(priority, other.priority);
+            }
+            // Same priority: first come, first served
+            return Long.compare(sequence, other.sequence);
+        }
+    }
+}
@@ -2,82 +2,138 @@ package com.mukesh.pdfly.pdfrenderer.helper;
 
 import android.content.Context;
 import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
 import android.graphics.Rect;
 import android.graphics.pdf.PdfRenderer;
 import android.net.Uri;
 import android.os.ParcelFileDescriptor;
-import android.util.DisplayMetrics;
 import android.util.Log;
-import android.widget.Toast;
 
-import java.io.File;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.FileNotFoundException;
 
 //mukesh
 public class PdfRendererHelper {
 
+    // Prevent extremely large bitmaps
+    private static final long MAX_BITMAP_BYTES = 100 * 1024 * 1024;
+
+    // Preview renders use a fraction of the width, so the page shows up almost immediately
+    private static final int PREVIEW_WIDTH_DIVISOR = 4;
+
+    public static final int QUALITY_PREVIEW = 0;
+    public static final int QUALITY_FULL = 1;
+
     public interface OnPageRenderedListener {
-        void onPageRendered(Bitmap renderedPage, int pageIndex);
+        // Called with QUALITY_PREVIEW first, then again with QUALITY_FULL for the same page
+        void onPageRendered(Bitmap renderedPage, int pageIndex, int quality);
     }
 
-    public static void renderAllPages(Context context, Uri pdfUri, OnPageRenderedListener listener) {
-        try (ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(pdfUri, "r")) {
-            if (pfd != null) {
-                renderFromParcel(context, pfd, listener);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-            Toast.makeText(context, "Failed to render PDF", Toast.LENGTH_SHORT).show();
+    public static ParcelFileDescriptor openDescriptor(Context context, Uri pdfUri) throws FileNotFoundException {
+        ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(pdfUri, "r");
+        if (pfd == null) {
+            throw new FileNotFoundException("Unable to open " + pdfUri);
         }
+        return pfd;
     }
 
-    public static void renderAllPages(Context context, String filePath, OnPageRenderedListener listener) {
-        File file = new File(filePath);
-        try (ParcelFileDescriptor pfd = ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY)) {
-            renderFromParcel(context, pfd, listener);
-        } catch (IOException e) {
-            e.printStackTrace();
-            Toast.makeText(context, "Failed to render PDF", Toast.LENGTH_SHORT).show();
-        }
+    // ✅ Always fit to screen width only
+    public static int getRenderHeight(int pageWidth, int pageHeight, int renderWidth) {
+        float scale = (float) renderWidth / pageWidth;
+        return (int) (pageHeight * scale);
     }
 
-    private static void renderFromParcel(Context context, ParcelFileDescriptor pfd, OnPageRenderedListener listener) throws IOException {
-        PdfRenderer renderer = new PdfRenderer(pfd);
-        int pageCount = renderer.getPageCount();
-
-        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
-        int screenWidth = metrics.widthPixels;
-
-        for (int i = 0; i < pageCount; i++) {
-            PdfRenderer.Page page = renderer.openPage(i);
-            int pageWidth = page.getWidth();
-            int pageHeight = page.getHeight();
-
-            // ✅ Always fit to screen width only
-            float scale = (float) screenWidth / pageWidth;
-
-            int renderWidth = screenWidth;
-            int renderHeight = (int) (pageHeight * scale);
+    /**
+     * Renders one page fitted to {@code renderWidth}. Pages that would need a bitmap over the
+     * size limit are rendered smaller instead; zoomed-in detail comes from {@link #renderTile}.
+     * Must be called by the thread that owns the renderer.
+     */
+    public static Bitmap renderPage(PdfRenderer renderer, int pageIndex, int renderWidth) {
+        try (PdfRenderer.Page page = renderer.openPage(pageIndex)) {
+            int renderHeight = getRenderHeight(page.getWidth(), page.getHeight(), renderWidth);
 
-            // Prevent extremely large bitmaps
             long estimatedBytes = renderWidth * renderHeight * 4L;
-            if (estimatedBytes > 100 * 1024 * 1024) {
-                Log.e("PDFRenderer", "Bitmap too large, skipping page " + i);
-                page.close();
-                continue;
+            if (estimatedBytes > MAX_BITMAP_BYTES) {
+                float shrink = (float) Math.sqrt((double) MAX_BITMAP_BYTES / estimatedBytes);
+                Log.w("PDFRenderer", "Bitmap too large, rendering page " + pageIndex + " at " + shrink + "x");
+                renderWidth = Math.max(1, (int) (renderWidth * shrink));
+                renderHeight = Math.max(1, (int) (renderHeight * shrink));
             }
 
-            Bitmap bitmap = Bitmap.createBitmap(renderWidth, renderHeight, Bitmap.Config.ARGB_8888);
+            Bitmap bitmap = BitmapPool.getInstance().get(renderWidth, renderHeight, Bitmap.Config.ARGB_8888);
             page.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
-            page.close();
+            return bitmap;
+        }
+    }
 
-            listener.onPageRendered(bitmap, i);
+    /**
+     * Renders one page on white at {@code dpi}, for export. Over the size limit the resolution
+     * is lowered instead; the bitmap's density is set to the DPI actually used, so callers can
+     * still tell the page's physical size. Must be called by the thread that owns the renderer.
+     */
+    public static Bitmap renderPageAtDpi(PdfRenderer renderer, int pageIndex, int dpi) {
+        try (PdfRenderer.Page page = renderer.openPage(pageIndex)) {
+            // Page sizes are in points, 72 to the inch
+            long estimatedBytes = (long) page.getWidth() * dpi / 72 * page.getHeight() * dpi / 72 * 4;
+            if (estimatedBytes > MAX_BITMAP_BYTES) {
+                dpi = Math.max(1, (int) (dpi * Math.sqrt((double) MAX_BITMAP_BYTES / estimatedBytes)));
+                Log.w("PDFRenderer", "Bitmap too large, exporting page " + pageIndex + " at " + dpi + " dpi");
+            }
+            int width = Math.max(1, page.getWidth() * dpi / 72);
+            int height = Math.max(1, page.getHeight() * dpi / 72);
+
+            Bitmap bitmap = BitmapPool.getInstance().get(width, height, Bitmap.Config.ARGB_8888);
+            bitmap.eraseColor(Color.WHITE);
+            page.render(bitmap, null, null, PdfRenderer.Page.RENDER_MODE_FOR_PRINT);
+            bitmap.setDensity(dpi);
+            return bitmap;
         }
+    }
 
-        renderer.close();
+    /**
+     * Quick low-resolution render at a quarter of {@code renderWidth}, kept as RGB_565 to halve
+     * its memory. PdfRenderer can only draw into ARGB_8888, so the page is rendered there first.
+     */
+    public static Bitmap renderPagePreview(PdfRenderer renderer, int pageIndex, int renderWidth) {
+        Bitmap argb = renderPage(renderer, pageIndex, Math.max(1, renderWidth / PREVIEW_WIDTH_DIVISOR));
+        // Transparent page areas would turn black in RGB_565
+        Bitmap preview = BitmapPool.getInstance().get(argb.getWidth(), argb.getHeight(), Bitmap.Config.RGB_565);
+        Canvas canvas = new Canvas(preview);
+        canvas.drawColor(Color.WHITE);
+        canvas.drawBitmap(argb, 0, 0, null);
+        BitmapPool.getInstance().put(argb);
+        return preview;
     }
 
-}
+    /**
+     * Renders one square tile of a page shown at {@code contentWidth x contentHeight} and
+     * zoomed by {@code zoom}. Tile (0, 0) is the top-left corner of the zoomed page. Only the
+     * part of the tile that lies on the page is rendered.
+     */
+    public static Bitmap renderTile(PdfRenderer renderer, int pageIndex, int contentWidth, int contentHeight,
+                                    float zoom, int tileX, int tileY, int tileSize) {
+        try (PdfRenderer.Page page = renderer.openPage(pageIndex)) {
+            float scaleX = contentWidth * zoom / page.getWidth();
+            float scaleY = contentHeight * zoom / page.getHeight();
+            int left = tileX * tileSize;
+            int top = tileY * tileSize;
+
+            Matrix transform = new Matrix();
+            transform.setScale(scaleX, scaleY);
+            transform.postTranslate(-left, -top);
+
+            Rect clip = new Rect(0, 0,
+                    Math.min(tileSize, Math.round(contentWidth * zoom) - left),
+                    Math.min(tileSize, Math.round(contentHeight * zoom) - top));
+            if (clip.isEmpty()) return null;
+
+            Bitmap tile = BitmapPool.getInstance().get(tileSize, tileSize, Bitmap.Config.ARGB_8888);
+            // Opaque, so the blurry base page underneath doesn't show through
+            tile.eraseColor(Color.WHITE);
+            page.render(tile, clip, transform, PdfRenderer.Page.RENDER_MODE_FOR_DISPLAY);
+            return tile;
+        }
+    }
 
+}
@@ -2,7 +2,6 @@ package com.mukesh.pdfly.pdfrenderer.helper;
 
 import android.app.Dialog;
 
-import com.mukesh.pdfly.pdfrenderer.activity.PdfEditorActivity;
 import android.app.Activity;
 import android.graphics.Color;
 import android.graphics.drawable.ColorDrawable;
@@ -15,11 +14,12 @@ import android.view.Window;
 import android.view.WindowManager;
 import android.widget.FrameLayout;
 import com.mukesh.pdfly.R;
+import com.mukesh.pdfly.pdfrenderer.model.ShapeType;
 
 public class ShapePickerDialogHelper {
 
     public interface ShapeSelectionListener {
-        void onShapeSelected(PdfEditorActivity.ShapeType shapeType);
+        void onShapeSelected(ShapeType shapeType);
     }
 
     private final Activity activity;
@@ -61,22 +61,22 @@ public class ShapePickerDialogHelper {
 
         // Set listeners for shape buttons
         sheetView.findViewById(R.id.btnRectangle).setOnClickListener(v -> {
-            listener.onShapeSelected(PdfEditorActivity.ShapeType.RECTANGLE);
+            listener.onShapeSelected(ShapeType.RECTANGLE);
             dialog.dismiss();
         });
 
         sheetView.findViewById(R.id.btnCircle).setOnClickListener(v -> {
-            listener.onShapeSelected(PdfEditorActivity.ShapeType.CIRCLE);
+            listener.onShapeSelected(ShapeType.CIRCLE);
             dialog.dismiss();
         });
 
         sheetView.findViewById(R.id.btnArrow).setOnClickListener(v -> {
-            listener.onShapeSelected(PdfEditorActivity.ShapeType.ARROW);
+            listener.onShapeSelected(ShapeType.ARROW);
             dialog.dismiss();
         });
 
         sheetView.findViewById(R.id.btnLine).setOnClickListener(v -> {
-            listener.onShapeSelected(PdfEditorActivity.ShapeType.LINE);
+            listener.onShapeSelected(ShapeType.LINE);
             dialog.dismiss();
         });
 
@@ -11,7 +11,7 @@ import com.mukesh.pdfly.R;
 public class ToolManager {
 
     public enum ToolType {
-        DRAW, UNDO, REDO, BLOCK_ACTION, SHAPE, SIGNATURE, CHECKMARK, TEXT, DATE
+        DRAW, ERASER, UNDO, REDO, BLOCK_ACTION, SHAPE, SIGNATURE, CHECKMARK, TEXT, DATE
     }
 
     public interface ToolActionHandler {
@@ -25,13 +25,13 @@ public class ToolManager {
     private ImageView drawToolIconView;
 
     private final int[] toolIcons = {
-            R.drawable.ic_pencil, R.drawable.ic_undo, R.drawable.ic_redo,
+            R.drawable.ic_pencil, R.drawable.ic_eraser, R.drawable.ic_undo, R.drawable.ic_redo,
             R.drawable.ic_select_24dp, R.drawable.ic_shapes_24dp,
             R.drawable.ic_signature_solid, R.drawable.ic_checkmark_transparent, R.drawable.ic_text_symbol_24dp, R.drawable.ic_calendar_add_light
     };
 
     private final ToolType[] tools = {
-            ToolType.DRAW, ToolType.UNDO, ToolType.REDO,
+            ToolType.DRAW, ToolType.ERASER, ToolType.UNDO, ToolType.REDO,
             ToolType.BLOCK_ACTION, ToolType.SHAPE, ToolType.SIGNATURE, ToolType.CHECKMARK, ToolType.TEXT, ToolType.DATE
     };
 
@@ -64,8 +64,8 @@ public class ToolManager {
     private void onToolClicked(int index) {
         View tapped = toolContainer.getChildAt(index);
 
-        if (selectedToolIndex == index && tools[index] == ToolType.DRAW) {
-            handler.onToolSelected(ToolType.DRAW, index); // Repeat click for pen popup
+        if (selectedToolIndex == index && (tools[index] == ToolType.DRAW || tools[index] == ToolType.ERASER)) {
+            handler.onToolSelected(tools[index], index); // Repeat click for pen popup or eraser mode
             return;
         }
 
@@ -0,0 +1,99 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Every edit made to one PDF, kept apart from the views that show it: for each page, its
+ * ink strokes and the elements placed on top. Plain Java, so saving, undo and hit-testing
+ * can work on it directly and it can be tested off the device.
+ *
+ * Not thread-safe; the editor owns it on the main thread.
+ */
+public class AnnotationDocument {
+
+    /**
+     * Told about every change made through the model. Elements are edited in place, so
+     * changes to them are only reported through {@link AnnotationPage#elementChanged}.
+     */
+    public interface ChangeListener {
+        void onStrokeAdded(AnnotationPage page, InkStroke stroke);
+
+        void onStrokeRemoved(AnnotationPage page, InkStroke stroke);
+
+        void onElementAdded(AnnotationPage page, ElementModel element);
+
+        void onElementChanged(AnnotationPage page, ElementModel element);
+
+        void onElementRemoved(AnnotationPage page, ElementModel element);
+    }
+
+    // Sorted, so pages come out in document order
+    private final TreeMap<Integer, AnnotationPage> pages = new TreeMap<>();
+    private long nextId = 1;
+    private final List<ChangeListener> changeListeners = new ArrayList<>();
+
+    public void addChangeListener(ChangeListener listener) {
+        changeListeners.add(listener);
+    }
+
+    public void removeChangeListener(ChangeListener listener) {
+        changeListeners.remove(listener);
+    }
+
+    List<ChangeListener> getChangeListeners() {
+        return changeListeners;
+    }
+
+    /** The page's annotations, created empty the first time it is asked for. */
+    public AnnotationPage getPage(int pageIndex) {
+        AnnotationPage page = pages.get(pageIndex);
+        if (page == null) {
+            page = new AnnotationPage(this, pageIndex);
+            pages.put(pageIndex, page);
+        }
+        return page;
+    }
+
+    /** Null if nothing was ever added to the page. */
+    public AnnotationPage findPage(int pageIndex) {
+        return pages.get(pageIndex);
+    }
+
+    /** Pages in index order, including ones whose edits were all removed again. */
+    public Collection<AnnotationPage> getPages() {
+        return Collections.unmodifiableCollection(pages.values());
+    }
+
+    /** The page {@code element} was added to, or null if it isn't on any. */
+    public AnnotationPage findPageOf(ElementModel element) {
+        for (AnnotationPage page : pages.values()) {
+            if (page.getElements().contains(element)) return page;
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        for (AnnotationPage page : pages.values()) {
+            if (!page.isEmpty()) return false;
+        }
+        return true;
+    }
+
+    public void clear() {
+        // Ids keep counting up, so nothing handed out before is ever reused
+        pages.clear();
+    }
+
+    long newId() {
+        return nextId++;
+    }
+
+    // Keeps ids read back from storage from being handed out again
+    void reserveId(long id) {
+        nextId = Math.max(nextId, id + 1);
+    }
+}
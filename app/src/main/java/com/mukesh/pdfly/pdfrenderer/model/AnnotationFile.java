@@ -0,0 +1,464 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * The {@code .pdfly} file: every annotation on a document, plus the images signatures refer
+ * to, so an edit session can be put back exactly as it was left.
+ *
+ * <pre>
+ * int    magic "PDLY"
+ * int    version
+ * int    index length
+ * index  varint page count, then per page: varint page index, offset, length
+ *        varint image count, then per image: string key, varint offset, length
+ * data   page records, then image bytes; offsets are from the start of data
+ * </pre>
+ *
+ * A page record is self-contained, so one page can be read through the index without
+ * parsing the rest. Stroke points are stored as zigzag varint deltas in 1/16 pixel steps,
+ * which takes one or two bytes per coordinate for ordinary handwriting. Strings are a varint
+ * byte count followed by UTF-8, so text boxes aren't held to {@code writeUTF}'s 64 KB.
+ */
+public class AnnotationFile {
+
+    private static final int MAGIC = 0x50444C59;
+    private static final int VERSION = 2;
+    private static final int FIXED_HEADER_BYTES = 12;
+    // Stroke coordinates are rounded to 1 / POINT_STEPS of a pixel
+    private static final float POINT_STEPS = 16f;
+
+    private static final byte KIND_SHAPE = 0;
+    private static final byte KIND_TEXT = 1;
+    private static final byte KIND_CHECKMARK = 2;
+    private static final byte KIND_SIGNATURE = 3;
+
+    private static final int FLAG_BOLD = 1;
+    private static final int FLAG_UNDERLINE = 1 << 1;
+    private static final int FLAG_STRIKETHROUGH = 1 << 2;
+
+    private static class Entry {
+        final long offset;
+        final int length;
+
+        Entry(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    // Where each record sits in the data section
+    private static class Index {
+        final Map<Integer, Entry> pages = new LinkedHashMap<>();
+        final Map<String, Entry> images = new LinkedHashMap<>();
+        long dataStart;
+    }
+
+    /**
+     * Encodes one page into a record for {@link #write}. Cheap, so it can be done on the
+     * thread that owns the model while the file is written elsewhere.
+     */
+    public static byte[] encodePage(AnnotationPage page) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeVarLong(out, page.pageIndex);
+            writeVarLong(out, page.getWidth());
+            writeVarLong(out, page.getHeight());
+
+            List<InkStroke> strokes = page.getStrokes();
+            writeVarLong(out, strokes.size());
+            for (InkStroke stroke : strokes) {
+                writeStroke(out, stroke);
+            }
+
+            List<ElementModel> elements = page.getElements();
+            writeVarLong(out, elements.size());
+            for (ElementModel element : elements) {
+                writeElement(out, element);
+            }
+        } catch (IOException e) {
+            // Only a byte array behind it
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Writes {@code pages}, records from {@link #encodePage} by page index, and {@code images}
+     * by key. Goes through a temp file, so a crash never leaves a half-written file behind.
+     */
+    public static void write(File file, SortedMap<Integer, byte[]> pages, Map<String, byte[]> images)
+            throws IOException {
+        ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+        try (DataOutputStream index = new DataOutputStream(indexBytes)) {
+            long offset = 0;
+            writeVarLong(index, pages.size());
+            for (Map.Entry<Integer, byte[]> page : pages.entrySet()) {
+                writeVarLong(index, page.getKey());
+                writeVarLong(index, offset);
+                writeVarLong(index, page.getValue().length);
+                offset += page.getValue().length;
+            }
+            writeVarLong(index, images.size());
+            for (Map.Entry<String, byte[]> image : images.entrySet()) {
+                writeString(index, image.getKey());
+                writeVarLong(index, offset);
+                writeVarLong(index, image.getValue().length);
+                offset += image.getValue().length;
+            }
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream fileOut = new FileOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(indexBytes.size());
+            indexBytes.writeTo(out);
+            for (byte[] page : pages.values()) {
+                out.write(page);
+            }
+            for (byte[] image : images.values()) {
+                out.write(image);
+            }
+            out.flush();
+            fileOut.getFD().sync();
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+            throw new IOException("Unable to write " + file);
+        }
+    }
+
+    /** Reads every page, and the images into {@code imagesOut} by key. */
+    public static AnnotationDocument read(File file, Map<String, byte[]> imagesOut) throws IOException {
+        AnnotationDocument document = new AnnotationDocument();
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            Index index = readIndex(channel);
+            for (Entry entry : index.pages.values()) {
+                readPageRecord(readRange(channel, index.dataStart + entry.offset, entry.length), document);
+            }
+            for (Map.Entry<String, Entry> image : index.images.entrySet()) {
+                Entry entry = image.getValue();
+                imagesOut.put(image.getKey(), readRange(channel, index.dataStart + entry.offset, entry.length));
+            }
+        }
+        return document;
+    }
+
+    /**
+     * Reads just one page into {@code document}, seeking past the others. Returns null if the
+     * file has nothing for that page.
+     */
+    public static AnnotationPage readPage(File file, int pageIndex, AnnotationDocument document) throws IOException {
+        try (FileInputStream in = new FileInputStream(file)) {
+            FileChannel channel = in.getChannel();
+            Index index = readIndex(channel);
+            Entry entry = index.pages.get(pageIndex);
+            if (entry == null) return null;
+            return readPageRecord(readRange(channel, index.dataStart + entry.offset, entry.length), document);
+        }
+    }
+
+    // Single strokes and elements, for keeping them compactly in memory
+
+    static byte[] encodeStroke(InkStroke stroke) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeStroke(out, stroke);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static InkStroke decodeStroke(byte[] record) {
+        try {
+            return readStroke(new DataInputStream(new ByteArrayInputStream(record)));
+        } catch (IOException e) {
+            // Only ever decodes what encodeStroke wrote
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static byte[] encodeElement(ElementModel element) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeElement(out, element);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static ElementModel decodeElement(byte[] record) {
+        try {
+            return readElement(new DataInputStream(new ByteArrayInputStream(record)));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Index readIndex(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.wrap(readRange(channel, 0, FIXED_HEADER_BYTES));
+        if (header.getInt() != MAGIC) {
+            throw new IOException("Not an annotation file");
+        }
+        int version = header.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported annotation file version " + version);
+        }
+        int indexLength = header.getInt();
+
+        Index index = new Index();
+        index.dataStart = FIXED_HEADER_BYTES + (long) indexLength;
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+                readRange(channel, FIXED_HEADER_BYTES, indexLength)));
+        int pageCount = readVarInt(in);
+        for (int i = 0; i < pageCount; i++) {
+            int pageIndex = readVarInt(in);
+            index.pages.put(pageIndex, new Entry(readVarLong(in), readVarInt(in)));
+        }
+        int imageCount = readVarInt(in);
+        for (int i = 0; i < imageCount; i++) {
+            String key = readString(in);
+            index.images.put(key, new Entry(readVarLong(in), readVarInt(in)));
+        }
+        return index;
+    }
+
+    private static byte[] readRange(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Annotation file is truncated");
+            }
+        }
+        return buffer.array();
+    }
+
+    private static AnnotationPage readPageRecord(byte[] record, AnnotationDocument document) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        AnnotationPage page = document.getPage(readVarInt(in));
+        page.setSize(readVarInt(in), readVarInt(in));
+
+        int strokeCount = readVarInt(in);
+        for (int i = 0; i < strokeCount; i++) {
+            page.addStroke(readStroke(in));
+        }
+        int elementCount = readVarInt(in);
+        for (int i = 0; i < elementCount; i++) {
+            page.addElement(readElement(in));
+        }
+        return page;
+    }
+
+    static void writeStroke(DataOutput out, InkStroke stroke) throws IOException {
+        writeVarLong(out, stroke.id);
+        out.writeInt(stroke.color);
+        out.writeFloat(stroke.width);
+
+        float[] points = stroke.points;
+        writeVarLong(out, points.length / 2);
+        // Each coordinate is stored as the change from the one before, which stays small
+        int lastX = 0;
+        int lastY = 0;
+        for (int i = 0; i + 1 < points.length; i += 2) {
+            int x = Math.round(points[i] * POINT_STEPS);
+            int y = Math.round(points[i + 1] * POINT_STEPS);
+            writeVarLong(out, zigzag(x - lastX));
+            writeVarLong(out, zigzag(y - lastY));
+            lastX = x;
+            lastY = y;
+        }
+    }
+
+    static InkStroke readStroke(DataInput in) throws IOException {
+        long id = readVarLong(in);
+        int color = in.readInt();
+        float width = in.readFloat();
+
+        float[] points = new float[readVarInt(in) * 2];
+        int x = 0;
+        int y = 0;
+        for (int i = 0; i < points.length; i += 2) {
+            x += unzigzag(readVarLong(in));
+            y += unzigzag(readVarLong(in));
+            points[i] = x / POINT_STEPS;
+            points[i + 1] = y / POINT_STEPS;
+        }
+
+        InkStroke stroke = new InkStroke(points, color, width);
+        stroke.id = id;
+        return stroke;
+    }
+
+    static void writeElement(DataOutput out, ElementModel element) throws IOException {
+        if (element instanceof ShapeModel) {
+            out.writeByte(KIND_SHAPE);
+        } else if (element instanceof TextModel) {
+            out.writeByte(KIND_TEXT);
+        } else if (element instanceof CheckmarkModel) {
+            out.writeByte(KIND_CHECKMARK);
+        } else if (element instanceof SignatureModel) {
+            out.writeByte(KIND_SIGNATURE);
+        } else {
+            throw new IllegalArgumentException("Unknown element " + element.getClass().getName());
+        }
+
+        writeVarLong(out, element.id);
+        out.writeFloat(element.x);
+        out.writeFloat(element.y);
+        out.writeFloat(element.width);
+        out.writeFloat(element.height);
+        out.writeFloat(element.scale);
+        out.writeFloat(element.rotation);
+
+        if (element instanceof ShapeModel) {
+            ShapeModel shape = (ShapeModel) element;
+            writeString(out, shape.type.name());
+            out.writeInt(shape.color);
+            out.writeFloat(shape.strokeWidth);
+            out.writeFloat(shape.angle);
+            out.writeFloat(shape.inset);
+        } else if (element instanceof TextModel) {
+            TextModel text = (TextModel) element;
+            writeString(out, text.text != null ? text.text : "");
+            out.writeInt(text.color);
+            out.writeInt(text.backgroundColor);
+            out.writeFloat(text.textSizePx);
+            out.writeByte((text.bold ? FLAG_BOLD : 0)
+                    | (text.underline ? FLAG_UNDERLINE : 0)
+                    | (text.strikethrough ? FLAG_STRIKETHROUGH : 0));
+            out.writeFloat(text.padding);
+        } else if (element instanceof CheckmarkModel) {
+            CheckmarkModel checkmark = (CheckmarkModel) element;
+            out.writeFloat(checkmark.angle);
+            out.writeFloat(checkmark.inset);
+        } else {
+            SignatureModel signature = (SignatureModel) element;
+            writeString(out, signature.imageKey);
+            out.writeFloat(signature.imageWidth);
+            out.writeFloat(signature.imageHeight);
+        }
+    }
+
+    static ElementModel readElement(DataInput in) throws IOException {
+        byte kind = in.readByte();
+        long id = readVarLong(in);
+        float[] geometry = new float[6];
+        for (int i = 0; i < geometry.length; i++) {
+            geometry[i] = in.readFloat();
+        }
+
+        ElementModel element;
+        switch (kind) {
+            case KIND_SHAPE:
+                ShapeModel shape = new ShapeModel(ShapeType.valueOf(readString(in)),
+                        in.readInt(), in.readFloat());
+                shape.angle = in.readFloat();
+                shape.inset = in.readFloat();
+                element = shape;
+                break;
+            case KIND_TEXT:
+                String content = readString(in);
+                int color = in.readInt();
+                int backgroundColor = in.readInt();
+                TextModel text = new TextModel(content, color, in.readFloat());
+                text.backgroundColor = backgroundColor;
+                int flags = in.readByte();
+                text.bold = (flags & FLAG_BOLD) != 0;
+                text.underline = (flags & FLAG_UNDERLINE) != 0;
+                text.strikethrough = (flags & FLAG_STRIKETHROUGH) != 0;
+                text.padding = in.readFloat();
+                element = text;
+                break;
+            case KIND_CHECKMARK:
+                CheckmarkModel checkmark = new CheckmarkModel();
+                checkmark.angle = in.readFloat();
+                checkmark.inset = in.readFloat();
+                element = checkmark;
+                break;
+            case KIND_SIGNATURE:
+                element = new SignatureModel(readString(in), in.readFloat(), in.readFloat());
+                break;
+            default:
+                throw new IOException("Unknown element kind " + kind);
+        }
+
+        element.id = id;
+        element.x = geometry[0];
+        element.y = geometry[1];
+        element.width = geometry[2];
+        element.height = geometry[3];
+        element.scale = geometry[4];
+        element.rotation = geometry[5];
+        return element;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    // Seven bits per byte, low bits first; the top bit says another byte follows
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static int readVarInt(DataInput in) throws IOException {
+        long value = readVarLong(in);
+        if (value < 0 || value > Integer.MAX_VALUE) {
+            throw new IOException("Value out of range: " + value);
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,243 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Undo and redo for every edit to an {@link AnnotationDocument}: strokes, and elements added,
+ * removed, moved, resized, rotated or restyled. Listens to the document, so edits are recorded
+ * however they are made.
+ *
+ * Each command keeps the stroke or element before and after, encoded the way
+ * {@link AnnotationFile} stores it, rather than the objects themselves. Changes to one element
+ * in quick succession, like a run of taps on a size button or the layout pass right after it
+ * is added, are coalesced into one command. Edits made between {@link #beginGroup} and
+ * {@link #endGroup}, like everything one eraser gesture rubs out, are undone and redone
+ * together. The oldest commands are dropped once the history outgrows {@link #MAX_BYTES}.
+ */
+public class AnnotationHistory implements AnnotationDocument.ChangeListener {
+
+    private static final long MAX_BYTES = 2 * 1024 * 1024;
+    private static final long COALESCE_WINDOW_NANOS = 750_000_000L;
+
+    private static final int ADD = 0;
+    private static final int REMOVE = 1;
+    private static final int CHANGE = 2;
+
+    private static class Command {
+        final int action;
+        final boolean stroke;
+        final int pageIndex;
+        final long id;
+        // Null where there is no such state, e.g. before an add
+        final byte[] before;
+        byte[] after;
+        long time;
+        // Commands sharing a group other than 0 are undone together
+        int group;
+        // Whether later changes to the same element may still be folded in
+        boolean open = true;
+
+        Command(int action, boolean stroke, int pageIndex, long id, byte[] before, byte[] after) {
+            this.action = action;
+            this.stroke = stroke;
+            this.pageIndex = pageIndex;
+            this.id = id;
+            this.before = before;
+            this.after = after;
+            this.time = System.nanoTime();
+        }
+
+        int size() {
+            return (before != null ? before.length : 0) + (after != null ? after.length : 0);
+        }
+    }
+
+    private final AnnotationDocument document;
+    private final Deque<Command> undoStack = new ArrayDeque<>();
+    private final Deque<Command> redoStack = new ArrayDeque<>();
+    private long undoBytes;
+    // Last recorded state of every element, which an in-place edit is the change from
+    private final Map<Long, byte[]> elementStates = new HashMap<>();
+    // Set while a command is applied, so it isn't recorded again
+    private boolean applying;
+    private int nextGroup;
+    private int currentGroup;
+
+    public AnnotationHistory(AnnotationDocument document) {
+        this.document = document;
+        recordElementStates();
+        document.addChangeListener(this);
+    }
+
+    /** Stops recording; the history is no use once the document is replaced. */
+    public void detach() {
+        document.removeChangeListener(this);
+    }
+
+    public boolean canUndo() {
+        return !undoStack.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redoStack.isEmpty();
+    }
+
+    /** Records the edits from here to {@link #endGroup} as one step, e.g. for one gesture. */
+    public void beginGroup() {
+        currentGroup = ++nextGroup;
+    }
+
+    public void endGroup() {
+        currentGroup = 0;
+    }
+
+    /** Undoes the last command. Returns the page it changed, or null if there was nothing to undo. */
+    public AnnotationPage undo() {
+        Command command = undoStack.pollLast();
+        if (command == null) return null;
+        AnnotationPage page;
+        do {
+            undoBytes -= command.size();
+            redoStack.addLast(command);
+            page = apply(command, command.before);
+            command = pollSameGroup(undoStack, command.group);
+        } while (command != null);
+        return page;
+    }
+
+    /** Redoes the last undone command. Returns the page it changed, or null if there was none. */
+    public AnnotationPage redo() {
+        Command command = redoStack.pollLast();
+        if (command == null) return null;
+        AnnotationPage page;
+        do {
+            push(command);
+            page = apply(command, command.after);
+            command = pollSameGroup(redoStack, command.group);
+        } while (command != null);
+        return page;
+    }
+
+    /**
+     * Forgets every command, e.g. after the document was changed in a way that isn't recorded,
+     * like {@link AnnotationPage#scaleContent}, so old states no longer fit.
+     */
+    public void clear() {
+        undoStack.clear();
+        redoStack.clear();
+        undoBytes = 0;
+        elementStates.clear();
+        recordElementStates();
+    }
+
+    @Override
+    public void onStrokeAdded(AnnotationPage page, InkStroke stroke) {
+        if (applying) return;
+        record(new Command(ADD, true, page.pageIndex, stroke.id, null, AnnotationFile.encodeStroke(stroke)));
+    }
+
+    @Override
+    public void onStrokeRemoved(AnnotationPage page, InkStroke stroke) {
+        if (applying) return;
+        record(new Command(REMOVE, true, page.pageIndex, stroke.id, AnnotationFile.encodeStroke(stroke), null));
+    }
+
+    @Override
+    public void onElementAdded(AnnotationPage page, ElementModel element) {
+        byte[] state = AnnotationFile.encodeElement(element);
+        elementStates.put(element.id, state);
+        if (applying) return;
+        record(new Command(ADD, false, page.pageIndex, element.id, null, state));
+    }
+
+    @Override
+    public void onElementChanged(AnnotationPage page, ElementModel element) {
+        byte[] after = AnnotationFile.encodeElement(element);
+        byte[] before = elementStates.put(element.id, after);
+        if (applying || before == null || Arrays.equals(before, after)) return;
+
+        Command last = undoStack.peekLast();
+        if (last != null && last.open && !last.stroke && last.id == element.id && last.action != REMOVE
+                && System.nanoTime() - last.time < COALESCE_WINDOW_NANOS) {
+            // Same gesture or burst of taps; the command now ends here
+            undoBytes += after.length - last.after.length;
+            last.after = after;
+            last.time = System.nanoTime();
+            redoStack.clear();
+            return;
+        }
+        record(new Command(CHANGE, false, page.pageIndex, element.id, before, after));
+    }
+
+    @Override
+    public void onElementRemoved(AnnotationPage page, ElementModel element) {
+        byte[] state = elementStates.remove(element.id);
+        if (applying) return;
+        if (state == null) {
+            state = AnnotationFile.encodeElement(element);
+        }
+        record(new Command(REMOVE, false, page.pageIndex, element.id, state, null));
+    }
+
+    private void record(Command command) {
+        command.group = currentGroup;
+        redoStack.clear();
+        push(command);
+    }
+
+    private void push(Command command) {
+        undoStack.addLast(command);
+        undoBytes += command.size();
+        while (undoBytes > MAX_BYTES && undoStack.size() > 1) {
+            Command dropped = undoStack.pollFirst();
+            undoBytes -= dropped.size();
+            // The rest of its group too; half a group would undo as if it were all of it
+            while (dropped.group != 0 && undoStack.size() > 1 && undoStack.peekFirst().group == dropped.group) {
+                undoBytes -= undoStack.pollFirst().size();
+            }
+        }
+    }
+
+    private static Command pollSameGroup(Deque<Command> stack, int group) {
+        Command next = stack.peekLast();
+        return group != 0 && next != null && next.group == group ? stack.pollLast() : null;
+    }
+
+    // Puts the stroke or element in state `to`; null means not on the page
+    private AnnotationPage apply(Command command, byte[] to) {
+        AnnotationPage page = document.getPage(command.pageIndex);
+        applying = true;
+        try {
+            if (command.stroke) {
+                InkStroke current = page.findStroke(command.id);
+                if (to == null) {
+                    if (current != null) page.removeStroke(current);
+                } else if (current == null) {
+                    page.addStroke(AnnotationFile.decodeStroke(to));
+                }
+            } else if (to == null) {
+                ElementModel current = page.findElement(command.id);
+                if (current != null) page.removeElement(current);
+            } else {
+                page.putElement(AnnotationFile.decodeElement(to));
+            }
+        } finally {
+            applying = false;
+        }
+        // Undone commands can't be coalesced with what comes next
+        command.open = false;
+        return page;
+    }
+
+    private void recordElementStates() {
+        for (AnnotationPage page : document.getPages()) {
+            for (ElementModel element : page.getElements()) {
+                elementStates.put(element.id, AnnotationFile.encodeElement(element));
+            }
+        }
+    }
+}
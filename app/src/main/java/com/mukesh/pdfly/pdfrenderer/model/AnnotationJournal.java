@@ -0,0 +1,200 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * The write-ahead journal kept beside a {@link AnnotationFile}: one record per edit made since
+ * that file was written, appended as the edits happen. Replaying it over the file brings a
+ * session back to its last edit after a crash, without rewriting the whole file every time.
+ *
+ * <pre>
+ * int    magic "PDLJ"
+ * int    version
+ * record int payload length, payload, int CRC-32 of the payload; repeated
+ * </pre>
+ *
+ * A payload is a type byte, then for edits the page index, width and height, then the stroke
+ * or element as {@link AnnotationFile} stores it, or just its id for a removal. Elements are
+ * always written whole, so a move and a text change are the same record. A crash can cut the
+ * last record short; replay stops at the first record that doesn't check out.
+ */
+public class AnnotationJournal {
+
+    private static final int MAGIC = 0x50444C4A;
+    private static final int VERSION = 2;
+
+    private static final byte STROKE_ADDED = 0;
+    private static final byte STROKE_REMOVED = 1;
+    private static final byte ELEMENT_PUT = 2;
+    private static final byte ELEMENT_REMOVED = 3;
+    private static final byte IMAGE = 4;
+
+    // A record claiming to be bigger than this is garbage, not a signature
+    private static final int MAX_RECORD_BYTES = 64 * 1024 * 1024;
+
+    private interface PayloadWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /** What a new journal file starts with, before any record. */
+    public static byte[] header() {
+        return ByteBuffer.allocate(8).putInt(MAGIC).putInt(VERSION).array();
+    }
+
+    public static byte[] strokeAdded(AnnotationPage page, InkStroke stroke) {
+        return frame(out -> {
+            writePage(out, STROKE_ADDED, page);
+            AnnotationFile.writeStroke(out, stroke);
+        });
+    }
+
+    public static byte[] strokeRemoved(AnnotationPage page, InkStroke stroke) {
+        return frame(out -> {
+            writePage(out, STROKE_REMOVED, page);
+            AnnotationFile.writeVarLong(out, stroke.id);
+        });
+    }
+
+    /** For an element that was added, or changed in any way since. */
+    public static byte[] elementPut(AnnotationPage page, ElementModel element) {
+        return frame(out -> {
+            writePage(out, ELEMENT_PUT, page);
+            AnnotationFile.writeElement(out, element);
+        });
+    }
+
+    public static byte[] elementRemoved(AnnotationPage page, ElementModel element) {
+        return frame(out -> {
+            writePage(out, ELEMENT_REMOVED, page);
+            AnnotationFile.writeVarLong(out, element.id);
+        });
+    }
+
+    /** The encoded image a signature refers to by {@code key}. */
+    public static byte[] image(String key, byte[] data) {
+        return frame(out -> {
+            out.writeByte(IMAGE);
+            AnnotationFile.writeString(out, key);
+            out.write(data);
+        });
+    }
+
+    /**
+     * Applies every intact record in {@code file} to {@code document}, in order, and collects
+     * the images into {@code imagesOut}. Returns the number of records applied.
+     */
+    public static int replay(File file, AnnotationDocument document, Map<String, byte[]> imagesOut)
+            throws IOException {
+        int applied = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not an annotation journal");
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported annotation journal version " + version);
+            }
+
+            CRC32 crc = new CRC32();
+            while (true) {
+                byte[] payload;
+                try {
+                    int length = in.readInt();
+                    if (length <= 0 || length > MAX_RECORD_BYTES) break;
+                    payload = new byte[length];
+                    in.readFully(payload);
+                    crc.reset();
+                    crc.update(payload, 0, length);
+                    if (in.readInt() != (int) crc.getValue()) break;
+                } catch (EOFException e) {
+                    // Torn tail from a crash mid-append
+                    break;
+                }
+                apply(payload, document, imagesOut);
+                applied++;
+            }
+        } catch (EOFException e) {
+            throw new IOException("Annotation journal is truncated", e);
+        }
+        return applied;
+    }
+
+    private static void apply(byte[] payload, AnnotationDocument document, Map<String, byte[]> imagesOut)
+            throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte type = in.readByte();
+        if (type == IMAGE) {
+            String key = AnnotationFile.readString(in);
+            byte[] data = new byte[in.available()];
+            in.readFully(data);
+            imagesOut.put(key, data);
+            return;
+        }
+
+        AnnotationPage page = document.getPage(AnnotationFile.readVarInt(in));
+        page.setSize(AnnotationFile.readVarInt(in), AnnotationFile.readVarInt(in));
+        switch (type) {
+            case STROKE_ADDED:
+                InkStroke stroke = AnnotationFile.readStroke(in);
+                // Already there if the snapshot was written after the record
+                if (page.findStroke(stroke.id) == null) {
+                    page.addStroke(stroke);
+                }
+                break;
+            case STROKE_REMOVED:
+                InkStroke removedStroke = page.findStroke(AnnotationFile.readVarLong(in));
+                if (removedStroke != null) {
+                    page.removeStroke(removedStroke);
+                }
+                break;
+            case ELEMENT_PUT:
+                page.putElement(AnnotationFile.readElement(in));
+                break;
+            case ELEMENT_REMOVED:
+                ElementModel removedElement = page.findElement(AnnotationFile.readVarLong(in));
+                if (removedElement != null) {
+                    page.removeElement(removedElement);
+                }
+                break;
+            default:
+                throw new IOException("Unknown journal record " + type);
+        }
+    }
+
+    private static void writePage(DataOutputStream out, byte type, AnnotationPage page) throws IOException {
+        out.writeByte(type);
+        AnnotationFile.writeVarLong(out, page.pageIndex);
+        AnnotationFile.writeVarLong(out, page.getWidth());
+        AnnotationFile.writeVarLong(out, page.getHeight());
+    }
+
+    private static byte[] frame(PayloadWriter writer) {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            writer.write(out);
+        } catch (IOException e) {
+            // Only a byte array behind it
+            throw new IllegalStateException(e);
+        }
+
+        byte[] bytes = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return ByteBuffer.allocate(bytes.length + 8)
+                .putInt(bytes.length)
+                .put(bytes)
+                .putInt((int) crc.getValue())
+                .array();
+    }
+}
@@ -0,0 +1,212 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The annotations on one page, in the page view's pixel coordinates: ink strokes oldest
+ * first, then elements bottom to top. Strokes and elements get an id the first time they are
+ * added and keep it, so one that is removed and added back is still the same annotation.
+ *
+ * Both are also kept in a {@link SpatialGrid}, so finding what is under a point doesn't
+ * depend on how much else is on the page.
+ */
+public class AnnotationPage {
+
+    private final AnnotationDocument document;
+    public final int pageIndex;
+    // Size of the page view the coordinates are relative to
+    private int width;
+    private int height;
+    private final List<InkStroke> strokes = new ArrayList<>();
+    private final List<ElementModel> elements = new ArrayList<>();
+    private final SpatialGrid<InkStroke> strokeGrid = new SpatialGrid<>();
+    private final SpatialGrid<ElementModel> elementGrid = new SpatialGrid<>();
+    private long nextStackOrder;
+    // Reused for bounds and query results, on the thread that owns the document
+    private final float[] bounds = new float[4];
+    private final List<ElementModel> elementCandidates = new ArrayList<>();
+
+    AnnotationPage(AnnotationDocument document, int pageIndex) {
+        this.document = document;
+        this.pageIndex = pageIndex;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public void setSize(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Scales everything on the page by {@code factor} about the top-left corner, e.g. when
+     * the page view is laid out wider than it was when the annotations were made. Elements
+     * keep their size and grow through their {@link ElementModel#scale} instead.
+     */
+    public void scaleContent(float factor) {
+        for (int i = 0; i < strokes.size(); i++) {
+            InkStroke stroke = strokes.get(i);
+            float[] points = new float[stroke.points.length];
+            for (int j = 0; j < points.length; j++) {
+                points[j] = stroke.points[j] * factor;
+            }
+            InkStroke scaled = new InkStroke(points, stroke.color, stroke.width * factor);
+            scaled.id = stroke.id;
+            strokes.set(i, scaled);
+            strokeGrid.remove(stroke);
+            index(scaled);
+        }
+        for (ElementModel element : elements) {
+            float centerX = (element.x + element.width / 2f) * factor;
+            float centerY = (element.y + element.height / 2f) * factor;
+            element.x = centerX - element.width / 2f;
+            element.y = centerY - element.height / 2f;
+            element.scale *= factor;
+            index(element);
+        }
+    }
+
+    public List<InkStroke> getStrokes() {
+        return Collections.unmodifiableList(strokes);
+    }
+
+    public List<ElementModel> getElements() {
+        return Collections.unmodifiableList(elements);
+    }
+
+    public void addStroke(InkStroke stroke) {
+        stroke.id = assignId(stroke.id);
+        strokes.add(stroke);
+        index(stroke);
+        for (AnnotationDocument.ChangeListener listener : listeners()) {
+            listener.onStrokeAdded(this, stroke);
+        }
+    }
+
+    public boolean removeStroke(InkStroke stroke) {
+        if (!strokes.remove(stroke)) return false;
+        strokeGrid.remove(stroke);
+        for (AnnotationDocument.ChangeListener listener : listeners()) {
+            listener.onStrokeRemoved(this, stroke);
+        }
+        return true;
+    }
+
+    public void addElement(ElementModel element) {
+        element.id = assignId(element.id);
+        element.stackOrder = ++nextStackOrder;
+        elements.add(element);
+        index(element);
+        for (AnnotationDocument.ChangeListener listener : listeners()) {
+            listener.onElementAdded(this, element);
+        }
+    }
+
+    /** Reports that {@code element}, already on this page, was edited in place. */
+    public void elementChanged(ElementModel element) {
+        if (!elements.contains(element)) return;
+        index(element);
+        for (AnnotationDocument.ChangeListener listener : listeners()) {
+            listener.onElementChanged(this, element);
+        }
+    }
+
+    /**
+     * Puts {@code element} in place of the one on the page with the same id, keeping its place
+     * in the stacking order, or adds it if there is none.
+     */
+    public void putElement(ElementModel element) {
+        ElementModel current = element.id != 0 ? findElement(element.id) : null;
+        if (current == null) {
+            addElement(element);
+            return;
+        }
+        elements.set(elements.indexOf(current), element);
+        element.stackOrder = current.stackOrder;
+        elementGrid.remove(current);
+        index(element);
+        for (AnnotationDocument.ChangeListener listener : listeners()) {
+            listener.onElementChanged(this, element);
+        }
+    }
+
+    public boolean removeElement(ElementModel element) {
+        if (!elements.remove(element)) return false;
+        elementGrid.remove(element);
+        for (AnnotationDocument.ChangeListener listener : listeners()) {
+            listener.onElementRemoved(this, element);
+        }
+        return true;
+    }
+
+    public InkStroke findStroke(long id) {
+        for (InkStroke stroke : strokes) {
+            if (stroke.id == id) return stroke;
+        }
+        return null;
+    }
+
+    public ElementModel findElement(long id) {
+        for (ElementModel element : elements) {
+            if (element.id == id) return element;
+        }
+        return null;
+    }
+
+    /** The topmost element under page point {@code x}, {@code y}, or null if there is none. */
+    public ElementModel findElementAt(float x, float y) {
+        elementCandidates.clear();
+        elementGrid.query(x, y, x, y, elementCandidates);
+        ElementModel topmost = null;
+        for (ElementModel element : elementCandidates) {
+            if ((topmost == null || element.stackOrder > topmost.stackOrder) && element.contains(x, y)) {
+                topmost = element;
+            }
+        }
+        elementCandidates.clear();
+        return topmost;
+    }
+
+    /**
+     * Adds to {@code out} the strokes whose bounds come within {@code radius} of page point
+     * {@code x}, {@code y}. Only a first cut; whether the line itself is that close is up to
+     * the caller.
+     */
+    public void findStrokesNear(float x, float y, float radius, List<InkStroke> out) {
+        strokeGrid.query(x - radius, y - radius, x + radius, y + radius, out);
+    }
+
+    public boolean isEmpty() {
+        return strokes.isEmpty() && elements.isEmpty();
+    }
+
+    // A copy, so a listener may edit the page or the listeners
+    private List<AnnotationDocument.ChangeListener> listeners() {
+        List<AnnotationDocument.ChangeListener> listeners = document.getChangeListeners();
+        return listeners.isEmpty() ? listeners : new ArrayList<>(listeners);
+    }
+
+    private void index(InkStroke stroke) {
+        stroke.getBounds(bounds);
+        strokeGrid.put(stroke, bounds[0], bounds[1], bounds[2], bounds[3]);
+    }
+
+    private void index(ElementModel element) {
+        element.getBounds(bounds);
+        elementGrid.put(element, bounds[0], bounds[1], bounds[2], bounds[3]);
+    }
+
+    private long assignId(long id) {
+        if (id == 0) return document.newId();
+        document.reserveId(id);
+        return id;
+    }
+}
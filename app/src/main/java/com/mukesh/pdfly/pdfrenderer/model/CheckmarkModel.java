@@ -0,0 +1,9 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+/** A checkmark icon drawn inside the element, {@link #inset} in from each edge. */
+public class CheckmarkModel extends ElementModel {
+
+    // Rotation of the icon inside the box, on top of the element's own
+    public float angle;
+    public float inset;
+}
@@ -0,0 +1,65 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+/**
+ * Anything placed on top of a page. The element is a {@link #width} by {@link #height} box
+ * with its top-left corner at {@link #x}, {@link #y}, scaled and then rotated about its
+ * centre. Includes the padding the editor keeps around the content for its handles.
+ */
+public abstract class ElementModel {
+
+    long id;
+    // Higher is on top; set by the page
+    long stackOrder;
+    public float x;
+    public float y;
+    public float width;
+    public float height;
+    public float scale = 1f;
+    // Degrees clockwise
+    public float rotation;
+
+    // Zero until the element is first added to a page
+    public long getId() {
+        return id;
+    }
+
+    /** Whether page point {@code px}, {@code py} falls inside the scaled, rotated box. */
+    public boolean contains(float px, float py) {
+        if (scale == 0) return false;
+        float centerX = x + width / 2f;
+        float centerY = y + height / 2f;
+
+        // Undo the rotation and scale, then test against the plain box
+        double radians = Math.toRadians(-rotation);
+        float cos = (float) Math.cos(radians);
+        float sin = (float) Math.sin(radians);
+        float dx = px - centerX;
+        float dy = py - centerY;
+        float localX = (dx * cos - dy * sin) / scale;
+        float localY = (dx * sin + dy * cos) / scale;
+        return containsLocal(localX, localY);
+    }
+
+    /**
+     * Whether a point counts as on the element, given relative to its centre, before scale
+     * and rotation. The whole box by default.
+     */
+    protected boolean containsLocal(float localX, float localY) {
+        return Math.abs(localX) <= width / 2f && Math.abs(localY) <= height / 2f;
+    }
+
+    /** The page-space box around the scaled, rotated element: left, top, right, bottom. */
+    public void getBounds(float[] out) {
+        float centerX = x + width / 2f;
+        float centerY = y + height / 2f;
+        double radians = Math.toRadians(rotation);
+        float cos = Math.abs((float) Math.cos(radians));
+        float sin = Math.abs((float) Math.sin(radians));
+        float halfWidth = (width * cos + height * sin) * scale / 2f;
+        float halfHeight = (width * sin + height * cos) * scale / 2f;
+        out[0] = centerX - halfWidth;
+        out[1] = centerY - halfHeight;
+        out[2] = centerX + halfWidth;
+        out[3] = centerY + halfHeight;
+    }
+}
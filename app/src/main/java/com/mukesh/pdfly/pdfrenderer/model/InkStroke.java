@@ -0,0 +1,62 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+/**
+ * A freehand stroke as the points its curve passes through: x0, y0, x1, y1, ... These are
+ * the touch points less the ones {@link StrokeFit#simplify} found it didn't need, and the
+ * curve is fitted through them by {@link StrokeFit#fitCurves}. Never changes once drawn.
+ */
+public class InkStroke {
+
+    long id;
+    public final float[] points;
+    public final int color;
+    public final float width;
+    // Left, top, right, bottom; worked out the first time they are asked for
+    private float[] bounds;
+
+    public InkStroke(float[] points, int color, float width) {
+        this.points = points;
+        this.color = color;
+        this.width = width;
+    }
+
+    // Zero until the stroke is first added to a page
+    public long getId() {
+        return id;
+    }
+
+    public int getPointCount() {
+        return points.length / 2;
+    }
+
+    /** The box the drawn stroke stays inside, line width included: left, top, right, bottom. */
+    public void getBounds(float[] out) {
+        if (bounds == null) {
+            bounds = computeBounds();
+        }
+        System.arraycopy(bounds, 0, out, 0, 4);
+    }
+
+    private float[] computeBounds() {
+        if (points.length < 2) return new float[4];
+        float[] box = {Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE};
+        include(box, points);
+        // Each curve stays inside its control points
+        include(box, StrokeFit.fitCurves(points));
+        float halfWidth = width / 2f;
+        box[0] -= halfWidth;
+        box[1] -= halfWidth;
+        box[2] += halfWidth;
+        box[3] += halfWidth;
+        return box;
+    }
+
+    private static void include(float[] box, float[] coordinates) {
+        for (int i = 0; i + 1 < coordinates.length; i += 2) {
+            box[0] = Math.min(box[0], coordinates[i]);
+            box[1] = Math.min(box[1], coordinates[i + 1]);
+            box[2] = Math.max(box[2], coordinates[i]);
+            box[3] = Math.max(box[3], coordinates[i + 1]);
+        }
+    }
+}
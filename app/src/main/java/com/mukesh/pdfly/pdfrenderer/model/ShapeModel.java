@@ -0,0 +1,18 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+/** An outlined shape drawn inside the element, {@link #inset} in from each edge. */
+public class ShapeModel extends ElementModel {
+
+    public ShapeType type;
+    public int color;
+    public float strokeWidth;
+    // Rotation of the shape inside the box, on top of the element's own
+    public float angle;
+    public float inset;
+
+    public ShapeModel(ShapeType type, int color, float strokeWidth) {
+        this.type = type;
+        this.color = color;
+        this.strokeWidth = strokeWidth;
+    }
+}
@@ -0,0 +1,6 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+/** The shapes a {@link ShapeModel} can be. Stored by name, so constants may be added but not renamed. */
+public enum ShapeType {
+    RECTANGLE, CIRCLE, ARROW, LINE
+}
@@ -0,0 +1,24 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+/**
+ * A signature image, {@link #imageWidth} by {@link #imageHeight}, centred in the element.
+ * Only refers to the pixels by {@link #imageKey}; whoever holds the document keeps the images.
+ */
+public class SignatureModel extends ElementModel {
+
+    public final String imageKey;
+    public float imageWidth;
+    public float imageHeight;
+
+    public SignatureModel(String imageKey, float imageWidth, float imageHeight) {
+        this.imageKey = imageKey;
+        this.imageWidth = imageWidth;
+        this.imageHeight = imageHeight;
+    }
+
+    // Just the image, not the room left around it for the handles
+    @Override
+    protected boolean containsLocal(float localX, float localY) {
+        return Math.abs(localX) <= imageWidth / 2f && Math.abs(localY) <= imageHeight / 2f;
+    }
+}
@@ -0,0 +1,122 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the items near a point without looking at every item on the page. The page is cut into
+ * square cells and each item is listed in the cells its bounding box touches, so a lookup only
+ * checks the items sharing a cell with it.
+ */
+class SpatialGrid<T> {
+
+    // About the size of a finger tip on a zoomed-out page
+    private static final float CELL_SIZE = 128f;
+
+    private static class Entry<T> {
+        final T item;
+        int minColumn;
+        int minRow;
+        int maxColumn;
+        int maxRow;
+        float left;
+        float top;
+        float right;
+        float bottom;
+        // The last query that returned it, so an item in several cells is returned once
+        int seenBy;
+
+        Entry(T item) {
+            this.item = item;
+        }
+    }
+
+    private final Map<Long, List<Entry<T>>> cells = new HashMap<>();
+    // By identity; items aren't expected to be equal to each other in any other sense
+    private final Map<T, Entry<T>> entries = new IdentityHashMap<>();
+    private int queryCount;
+
+    /** Adds {@code item} with the given bounds, or moves it there if it is already in. */
+    void put(T item, float left, float top, float right, float bottom) {
+        Entry<T> entry = entries.get(item);
+        if (entry == null) {
+            entry = new Entry<>(item);
+            entries.put(item, entry);
+        } else {
+            unlist(entry);
+        }
+        entry.left = left;
+        entry.top = top;
+        entry.right = right;
+        entry.bottom = bottom;
+        entry.minColumn = cellOf(left);
+        entry.minRow = cellOf(top);
+        entry.maxColumn = cellOf(right);
+        entry.maxRow = cellOf(bottom);
+        for (int column = entry.minColumn; column <= entry.maxColumn; column++) {
+            for (int row = entry.minRow; row <= entry.maxRow; row++) {
+                List<Entry<T>> cell = cells.get(key(column, row));
+                if (cell == null) {
+                    cell = new ArrayList<>(4);
+                    cells.put(key(column, row), cell);
+                }
+                cell.add(entry);
+            }
+        }
+    }
+
+    void remove(T item) {
+        Entry<T> entry = entries.remove(item);
+        if (entry != null) {
+            unlist(entry);
+        }
+    }
+
+    void clear() {
+        cells.clear();
+        entries.clear();
+    }
+
+    /** Adds to {@code out} every item whose bounds overlap the rectangle, each once. */
+    void query(float left, float top, float right, float bottom, List<T> out) {
+        int query = ++queryCount;
+        for (int column = cellOf(left); column <= cellOf(right); column++) {
+            for (int row = cellOf(top); row <= cellOf(bottom); row++) {
+                List<Entry<T>> cell = cells.get(key(column, row));
+                if (cell == null) continue;
+                for (Entry<T> entry : cell) {
+                    if (entry.seenBy == query) continue;
+                    entry.seenBy = query;
+                    if (entry.left <= right && entry.right >= left && entry.top <= bottom && entry.bottom >= top) {
+                        out.add(entry.item);
+                    }
+                }
+            }
+        }
+    }
+
+    private void unlist(Entry<T> entry) {
+        for (int column = entry.minColumn; column <= entry.maxColumn; column++) {
+            for (int row = entry.minRow; row <= entry.maxRow; row++) {
+                long key = key(column, row);
+                List<Entry<T>> cell = cells.get(key);
+                if (cell == null) continue;
+                cell.remove(entry);
+                if (cell.isEmpty()) {
+                    cells.remove(key);
+                }
+            }
+        }
+    }
+
+    private static int cellOf(float coordinate) {
+        return (int) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    private static long key(int column, int row) {
+        return ((long) column << 32) | (row & 0xFFFFFFFFL);
+    }
+}
@@ -0,0 +1,67 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+import java.util.Arrays;
+
+/**
+ * The samples of a stroke while it is being drawn: x, y, pressure and time for each, packed
+ * into one growable float array. Meant to be reused from stroke to stroke, so adding samples
+ * allocates nothing once the array is big enough.
+ */
+public class StrokeBuffer {
+
+    private static final int STRIDE = 4;
+
+    private float[] samples = new float[64 * STRIDE];
+    private int count;
+    private long startTime;
+
+    /** Empties the buffer for a stroke starting at {@code startTime}, in milliseconds. */
+    public void reset(long startTime) {
+        this.startTime = startTime;
+        count = 0;
+    }
+
+    public void add(float x, float y, float pressure, long time) {
+        int offset = count * STRIDE;
+        if (offset + STRIDE > samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        samples[offset] = x;
+        samples[offset + 1] = y;
+        samples[offset + 2] = pressure;
+        // Relative, so a float keeps millisecond precision
+        samples[offset + 3] = time - startTime;
+        count++;
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public float getX(int index) {
+        return samples[index * STRIDE];
+    }
+
+    public float getY(int index) {
+        return samples[index * STRIDE + 1];
+    }
+
+    public float getPressure(int index) {
+        return samples[index * STRIDE + 2];
+    }
+
+    /** Milliseconds since the stroke started. */
+    public float getTime(int index) {
+        return samples[index * STRIDE + 3];
+    }
+
+    /** The positions alone, x0, y0, x1, y1, ..., as an {@link InkStroke} keeps them. */
+    public float[] toPoints() {
+        float[] points = new float[count * 2];
+        for (int i = 0; i < count; i++) {
+            points[i * 2] = samples[i * STRIDE];
+            points[i * 2 + 1] = samples[i * STRIDE + 1];
+        }
+        return points;
+    }
+}
@@ -0,0 +1,182 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Where an eraser, a circle around a point, meets a stroke. Works on the curve the stroke is
+ * drawn as, not just its points, with the line's width included: a stroke is touched once any
+ * of its ink would be under the eraser.
+ */
+public class StrokeEraser {
+
+    // Longest piece of a curve near the eraser is flattened into, as a share of the eraser radius
+    private static final float FLATTEN_STEP = 0.25f;
+    private static final int MAX_FLATTEN_STEPS = 64;
+
+    /** Whether any of {@code stroke}'s ink lies within {@code radius} of {@code x}, {@code y}. */
+    public static boolean touches(InkStroke stroke, float x, float y, float radius) {
+        return cut(stroke, x, y, radius, false) != null;
+    }
+
+    /**
+     * What is left of {@code stroke} once everything within {@code radius} of {@code x},
+     * {@code y} is rubbed out: the points of each remaining piece, in order, as an
+     * {@link InkStroke} keeps them. Empty if nothing is left, null if the eraser missed it.
+     * The pieces end where the ends' round caps just touch the eraser.
+     */
+    public static List<float[]> erase(InkStroke stroke, float x, float y, float radius) {
+        return cut(stroke, x, y, radius, true);
+    }
+
+    private static List<float[]> cut(InkStroke stroke, float x, float y, float radius, boolean keepPieces) {
+        float[] points = stroke.points;
+        if (points.length < 2) return null;
+        // The line's centre has to stay this far away for none of its ink to be under the eraser
+        float reach = radius + stroke.width / 2f;
+        Cutter cutter = new Cutter(x, y, reach, keepPieces);
+
+        cutter.start(points[0], points[1]);
+        if (points.length < 4) {
+            // A dot
+            return cutter.finish();
+        }
+        float[] curves = StrokeFit.fitCurves(points);
+        float step = Math.max(radius * FLATTEN_STEP, 0.5f);
+        for (int c = 0; c + 5 < curves.length && !(cutter.hit && !keepPieces); c += 6) {
+            float x0 = points[c / 3];
+            float y0 = points[c / 3 + 1];
+            if (!nearBox(x, y, reach, x0, y0, curves, c)) {
+                // The curve stays inside the box around its points, so all of it is clear
+                cutter.lineTo(curves[c + 4], curves[c + 5]);
+                continue;
+            }
+            float span = length(curves[c] - x0, curves[c + 1] - y0)
+                    + length(curves[c + 2] - curves[c], curves[c + 3] - curves[c + 1])
+                    + length(curves[c + 4] - curves[c + 2], curves[c + 5] - curves[c + 3]);
+            int steps = Math.min(MAX_FLATTEN_STEPS, Math.max(1, (int) Math.ceil(span / step)));
+            for (int i = 1; i < steps; i++) {
+                float t = (float) i / steps;
+                float u = 1 - t;
+                float a = u * u * u;
+                float b = 3 * u * u * t;
+                float d = 3 * u * t * t;
+                float e = t * t * t;
+                cutter.lineTo(a * x0 + b * curves[c] + d * curves[c + 2] + e * curves[c + 4],
+                        a * y0 + b * curves[c + 1] + d * curves[c + 3] + e * curves[c + 5]);
+            }
+            cutter.lineTo(curves[c + 4], curves[c + 5]);
+        }
+        return cutter.finish();
+    }
+
+    // Whether the circle may reach the box around a curve's start, control and end points
+    private static boolean nearBox(float x, float y, float reach, float x0, float y0, float[] curves, int c) {
+        float left = Math.min(Math.min(x0, curves[c]), Math.min(curves[c + 2], curves[c + 4]));
+        float right = Math.max(Math.max(x0, curves[c]), Math.max(curves[c + 2], curves[c + 4]));
+        float top = Math.min(Math.min(y0, curves[c + 1]), Math.min(curves[c + 3], curves[c + 5]));
+        float bottom = Math.max(Math.max(y0, curves[c + 1]), Math.max(curves[c + 3], curves[c + 5]));
+        return x >= left - reach && x <= right + reach && y >= top - reach && y <= bottom + reach;
+    }
+
+    private static float length(float x, float y) {
+        return (float) Math.sqrt(x * x + y * y);
+    }
+
+    // Follows a polyline, keeping the parts outside the circle as separate pieces
+    private static class Cutter {
+        final float centerX;
+        final float centerY;
+        final float reachSquared;
+        final boolean keepPieces;
+        final List<float[]> pieces = new ArrayList<>();
+        // The piece being followed; empty while inside the circle
+        float[] piece = new float[32];
+        int pieceSize;
+        float lastX;
+        float lastY;
+        boolean hit;
+
+        Cutter(float centerX, float centerY, float reach, boolean keepPieces) {
+            this.centerX = centerX;
+            this.centerY = centerY;
+            this.reachSquared = reach * reach;
+            this.keepPieces = keepPieces;
+        }
+
+        void start(float x, float y) {
+            float dx = x - centerX;
+            float dy = y - centerY;
+            if (dx * dx + dy * dy < reachSquared) {
+                hit = true;
+            } else {
+                add(x, y);
+            }
+            lastX = x;
+            lastY = y;
+        }
+
+        void lineTo(float x, float y) {
+            float dx = x - lastX;
+            float dy = y - lastY;
+            float fromX = lastX - centerX;
+            float fromY = lastY - centerY;
+            float a = dx * dx + dy * dy;
+            if (a == 0) return;
+            float b = 2 * (dx * fromX + dy * fromY);
+            float c = fromX * fromX + fromY * fromY - reachSquared;
+            float discriminant = b * b - 4 * a * c;
+
+            // Where the line enters and leaves the circle, as a share of the way along it
+            float enter = 2;
+            float leave = -1;
+            if (discriminant > 0) {
+                float root = (float) Math.sqrt(discriminant);
+                enter = (-b - root) / (2 * a);
+                leave = (-b + root) / (2 * a);
+            }
+            if (leave <= 0 || enter >= 1) {
+                // Clear of the circle; starts a piece if the last point was right at its edge
+                if (pieceSize == 0) add(lastX, lastY);
+                add(x, y);
+            } else {
+                hit = true;
+                if (pieceSize > 0) {
+                    enter = Math.max(enter, 0);
+                    add(lastX + dx * enter, lastY + dy * enter);
+                    endPiece();
+                }
+                if (leave < 1) {
+                    add(lastX + dx * leave, lastY + dy * leave);
+                    add(x, y);
+                }
+            }
+            lastX = x;
+            lastY = y;
+        }
+
+        List<float[]> finish() {
+            endPiece();
+            return hit ? pieces : null;
+        }
+
+        private void add(float x, float y) {
+            if (!keepPieces) return;
+            if (pieceSize > 0 && piece[pieceSize - 2] == x && piece[pieceSize - 1] == y) return;
+            if (pieceSize + 2 > piece.length) {
+                piece = Arrays.copyOf(piece, piece.length * 2);
+            }
+            piece[pieceSize++] = x;
+            piece[pieceSize++] = y;
+        }
+
+        private void endPiece() {
+            // A lone point would be a leftover dot right at the eraser's edge
+            if (pieceSize >= 4) {
+                pieces.add(Arrays.copyOf(piece, pieceSize));
+            }
+            pieceSize = 0;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+import java.util.Arrays;
+
+/**
+ * Turns the touch points of a stroke into what is kept and drawn: {@link #simplify} drops the
+ * points the stroke doesn't need, then {@link #fitCurves} fits a smooth curve back through the
+ * ones that are left. Points are x0, y0, x1, y1, ... throughout.
+ */
+public class StrokeFit {
+
+    // How far along a segment its control points sit; a third matches a Catmull-Rom spline
+    private static final float HANDLE_FRACTION = 1f / 3f;
+    // A turn sharper than this (cosine of the angle between segments) is kept as a corner
+    private static final float CORNER_COSINE = 0f;
+
+    /**
+     * Ramer–Douglas–Peucker: keeps the first and last point, and every point the polyline
+     * through the kept ones would otherwise miss by more than {@code tolerance}.
+     */
+    public static float[] simplify(float[] points, float tolerance) {
+        int count = points.length / 2;
+        if (count < 3) return Arrays.copyOf(points, count * 2);
+
+        boolean[] keep = new boolean[count];
+        keep[0] = true;
+        keep[count - 1] = true;
+        float toleranceSquared = tolerance * tolerance;
+
+        // Spans still to check, as first and last index pairs; iterative, so a long stroke can't
+        // run out of stack
+        int[] spans = new int[32];
+        int spanCount = 0;
+        spans[spanCount++] = 0;
+        spans[spanCount++] = count - 1;
+        while (spanCount > 0) {
+            int last = spans[--spanCount];
+            int first = spans[--spanCount];
+
+            int farthest = -1;
+            float farthestSquared = toleranceSquared;
+            for (int i = first + 1; i < last; i++) {
+                float distanceSquared = segmentDistanceSquared(points, i, first, last);
+                if (distanceSquared > farthestSquared) {
+                    farthest = i;
+                    farthestSquared = distanceSquared;
+                }
+            }
+            if (farthest < 0) continue;
+
+            keep[farthest] = true;
+            if (spanCount + 4 > spans.length) {
+                spans = Arrays.copyOf(spans, spans.length * 2);
+            }
+            spans[spanCount++] = first;
+            spans[spanCount++] = farthest;
+            spans[spanCount++] = farthest;
+            spans[spanCount++] = last;
+        }
+
+        int kept = 0;
+        for (boolean k : keep) {
+            if (k) kept++;
+        }
+        float[] result = new float[kept * 2];
+        int j = 0;
+        for (int i = 0; i < count; i++) {
+            if (keep[i]) {
+                result[j++] = points[i * 2];
+                result[j++] = points[i * 2 + 1];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * A curve through every point: one cubic Bézier per pair of neighbours, as c1x, c1y, c2x,
+     * c2y, x, y, starting from the first point. Each point's tangent follows its neighbours on
+     * both sides, so the curve turns smoothly, except where the stroke turns sharply enough that
+     * the point is kept as a corner.
+     */
+    public static float[] fitCurves(float[] points) {
+        int count = points.length / 2;
+        if (count < 2) return new float[0];
+
+        // Unit tangents leaving and arriving at each point; only different at a corner
+        float[] out = new float[count * 2];
+        float[] in = new float[count * 2];
+        for (int i = 0; i < count; i++) {
+            int previous = Math.max(i - 1, 0);
+            int next = Math.min(i + 1, count - 1);
+            float inX = points[i * 2] - points[previous * 2];
+            float inY = points[i * 2 + 1] - points[previous * 2 + 1];
+            float outX = points[next * 2] - points[i * 2];
+            float outY = points[next * 2 + 1] - points[i * 2 + 1];
+            float inLength = length(inX, inY);
+            float outLength = length(outX, outY);
+
+            boolean corner = inLength > 0 && outLength > 0
+                    && (inX * outX + inY * outY) / (inLength * outLength) < CORNER_COSINE;
+            if (corner) {
+                setUnit(in, i, inX, inY);
+                setUnit(out, i, outX, outY);
+            } else {
+                // Across both neighbours; at either end, just the one there is
+                setUnit(in, i, inX + outX, inY + outY);
+                out[i * 2] = in[i * 2];
+                out[i * 2 + 1] = in[i * 2 + 1];
+            }
+        }
+
+        float[] curves = new float[(count - 1) * 6];
+        for (int i = 0; i < count - 1; i++) {
+            float x0 = points[i * 2];
+            float y0 = points[i * 2 + 1];
+            float x1 = points[i * 2 + 2];
+            float y1 = points[i * 2 + 3];
+            float handle = length(x1 - x0, y1 - y0) * HANDLE_FRACTION;
+            int c = i * 6;
+            curves[c] = x0 + out[i * 2] * handle;
+            curves[c + 1] = y0 + out[i * 2 + 1] * handle;
+            curves[c + 2] = x1 - in[i * 2 + 2] * handle;
+            curves[c + 3] = y1 - in[i * 2 + 3] * handle;
+            curves[c + 4] = x1;
+            curves[c + 5] = y1;
+        }
+        return curves;
+    }
+
+    // From point i to the segment between points a and b
+    private static float segmentDistanceSquared(float[] points, int i, int a, int b) {
+        float px = points[i * 2];
+        float py = points[i * 2 + 1];
+        float ax = points[a * 2];
+        float ay = points[a * 2 + 1];
+        float dx = points[b * 2] - ax;
+        float dy = points[b * 2 + 1] - ay;
+        float lengthSquared = dx * dx + dy * dy;
+        float t = 0;
+        if (lengthSquared > 0) {
+            t = Math.max(0, Math.min(1, ((px - ax) * dx + (py - ay) * dy) / lengthSquared));
+        }
+        float ex = ax + t * dx - px;
+        float ey = ay + t * dy - py;
+        return ex * ex + ey * ey;
+    }
+
+    private static float length(float x, float y) {
+        return (float) Math.sqrt(x * x + y * y);
+    }
+
+    private static void setUnit(float[] vectors, int i, float x, float y) {
+        float length = length(x, y);
+        vectors[i * 2] = length > 0 ? x / length : 0;
+        vectors[i * 2 + 1] = length > 0 ? y / length : 0;
+    }
+}
@@ -0,0 +1,24 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+/**
+ * A block of text, wrapped to the element's width less {@link #padding} on each side and
+ * centred both ways, the way the editor lays it out.
+ */
+public class TextModel extends ElementModel {
+
+    public String text;
+    public int color;
+    // Zero for none
+    public int backgroundColor;
+    public float textSizePx;
+    public boolean bold;
+    public boolean underline;
+    public boolean strikethrough;
+    public float padding;
+
+    public TextModel(String text, int color, float textSizePx) {
+        this.text = text;
+        this.color = color;
+        this.textSizePx = textSizePx;
+    }
+}
@@ -17,24 +17,31 @@ import androidx.core.graphics.drawable.DrawableCompat;
 
 import com.mukesh.pdfly.R;
 import com.mukesh.pdfly.pdfrenderer.activity.PdfEditorActivity;
+import com.mukesh.pdfly.pdfrenderer.model.CheckmarkModel;
 import com.mukesh.pdfly.signature.views.OverlayElementView;
 
 public class CheckmarkElementView extends OverlayElementView {
+    private final CheckmarkModel model;
     private Drawable checkmarkDrawable;
     private Rect resizeHandleRect, rotateHandleRect, deleteHandleRect;
     private Paint selectionPaint;
     private boolean isSelected = false;
     private boolean isResizing = false, isRotating = false;
     private float dX, dY;
-    private float rotationAngle = 0f;
     private static final int SELECTION_PADDING_DP = 30;
     private int selectionPaddingPx;
     private Drawable bgDrawable;
 
     public CheckmarkElementView(Context context) {
+        this(context, new CheckmarkModel());
+    }
+
+    public CheckmarkElementView(Context context, CheckmarkModel model) {
         super(context);
         setWillNotDraw(false);
         selectionPaddingPx = dpToPx(SELECTION_PADDING_DP);
+        this.model = model;
+        model.inset = selectionPaddingPx + dpToPx(8);
 
         checkmarkDrawable = getTintedDrawable(R.drawable.checkmark); // <-- your checkmark vector
         bgDrawable = AppCompatResources.getDrawable(getContext(), R.drawable.circle_button_bg);
@@ -54,18 +61,12 @@ public class CheckmarkElementView extends OverlayElementView {
 
         int w = getWidth(), h = getHeight();
         float centerX = w / 2f, centerY = h / 2f;
-        int iconPadding = dpToPx(8);
-
         canvas.save();
-        canvas.rotate(rotationAngle, centerX, centerY);
+        canvas.rotate(model.angle, centerX, centerY);
 
         // Draw checkmark drawable centered
         if (checkmarkDrawable != null) {
-            int left = selectionPaddingPx + iconPadding;
-            int top = selectionPaddingPx + iconPadding;
-            int right = w - selectionPaddingPx - iconPadding;
-            int bottom = h - selectionPaddingPx - iconPadding;
-            checkmarkDrawable.setBounds(left, top, right, bottom);
+            checkmarkDrawable.setBounds(getCheckmarkBounds());
             checkmarkDrawable.draw(canvas);
         }
 
@@ -137,14 +138,18 @@ public class CheckmarkElementView extends OverlayElementView {
                         newWidth = Math.max(minSize, newWidth);
                         newHeight = Math.max(minSize, newHeight);
                         ViewGroup.LayoutParams lp = getLayoutParams();
-                        lp.width = newWidth;
-                        lp.height = newHeight;
-                        setLayoutParams(lp);
-                        invalidate();
+                        if (lp.width != newWidth || lp.height != newHeight) {
+                            lp.width = newWidth;
+                            lp.height = newHeight;
+                            setLayoutParams(lp);
+                        }
                     } else if (isRotating) {
                         float cx = getWidth() / 2f, cy = getHeight() / 2f;
-                        rotationAngle = (float) Math.toDegrees(Math.atan2(y - cy, x - cx));
-                        invalidate();
+                        float angle = (float) Math.toDegrees(Math.atan2(y - cy, x - cx));
+                        if (angle != model.angle) {
+                            model.angle = angle;
+                            invalidate();
+                        }
                     } else {
                         setX(event.getRawX() - dX);
                         setY(event.getRawY() - dY);
@@ -162,6 +167,25 @@ public class CheckmarkElementView extends OverlayElementView {
         });
     }
 
+    @Override
+    public CheckmarkModel getModel() {
+        return model;
+    }
+
+    public Drawable getCheckmarkDrawable() {
+        return checkmarkDrawable;
+    }
+
+    public float getRotationAngle() {
+        return model.angle;
+    }
+
+    // Same bounds onDraw() gives the checkmark
+    public Rect getCheckmarkBounds() {
+        int inset = (int) model.inset;
+        return new Rect(inset, inset, getWidth() - inset, getHeight() - inset);
+    }
+
     private Drawable getTintedDrawable(@DrawableRes int drawableId) {
         Drawable d = AppCompatResources.getDrawable(getContext(), drawableId);
         if (d == null) return null;
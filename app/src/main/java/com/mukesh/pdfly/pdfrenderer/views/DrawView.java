@@ -6,45 +6,124 @@ import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.graphics.Picture;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.RenderNode;
+import android.os.Build;
 import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.View;
 
 import com.mukesh.pdfly.DrawSettingsProvider;
+import com.mukesh.pdfly.pdfrenderer.helper.BitmapPool;
+import com.mukesh.pdfly.pdfrenderer.model.AnnotationPage;
+import com.mukesh.pdfly.pdfrenderer.model.InkStroke;
+import com.mukesh.pdfly.pdfrenderer.model.StrokeBuffer;
+import com.mukesh.pdfly.pdfrenderer.model.StrokeEraser;
+import com.mukesh.pdfly.pdfrenderer.model.StrokeFit;
 
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Stack;
+import java.util.Map;
 
 //hihi
+// Draws the ink of one AnnotationPage and records new strokes into it, or rubs them out.
+// Finished strokes are recorded into layers once and replayed each frame; only the stroke
+// being drawn is drawn from scratch, so inking costs the same on a page full of ink.
 public class DrawView extends View {
+    // Strokes per layer. A new or removed stroke only re-records the layer it falls in.
+    private static final int STROKES_PER_LAYER = 32;
+    // How far, in screen pixels at the zoom it was drawn at, a finished stroke may be
+    // simplified away from its touch points
+    private static final float SIMPLIFY_TOLERANCE_PX = 0.5f;
+    // The eraser's radius on screen, whatever the zoom
+    private static final float ERASER_RADIUS_DP = 12f;
+
+    // What touches rub out when erasing: strokes they touch, or just the ink under them
+    public enum EraseMode {
+        WHOLE_STROKE, PARTIAL
+    }
+
     private boolean drawingEnabled = false;
+    // Null while touches draw
+    private EraseMode eraseMode;
 
     private Path currentPath;
     private Paint currentPaint;
+    // Every touch sample of the stroke being drawn, batched ones included
+    private final StrokeBuffer currentPoints = new StrokeBuffer();
+
+    private AnnotationPage page;
 
     private DrawSettingsProvider settingsProvider;
+    private OnStrokesChangedListener strokesChangedListener;
+    private OnEraseListener eraseListener;
 
     public void setDrawingEnabled(boolean enabled) {
         this.drawingEnabled = enabled;
     }
 
+    /** Makes touches erase instead of draw while drawing is enabled; null to draw again. */
+    public void setEraseMode(EraseMode mode) {
+        this.eraseMode = mode;
+    }
+
     public void setDrawSettingsProvider(DrawSettingsProvider provider) {
         this.settingsProvider = provider;
     }
 
+    public void setOnStrokesChangedListener(OnStrokesChangedListener listener) {
+        this.strokesChangedListener = listener;
+    }
+
+    public void setOnEraseListener(OnEraseListener listener) {
+        this.eraseListener = listener;
+    }
+
+    // A model stroke with the Path and Paint it is drawn with
     private static class Stroke {
+        InkStroke ink;
         Path path;
         Paint paint;
+        // Its place in strokes
+        int index;
+        // Rubbed out during the current eraser gesture; dropped from strokes once it ends
+        boolean erased;
 
-        Stroke(Path path, Paint paint) {
+        Stroke(InkStroke ink, Path path, Paint paint) {
+            this.ink = ink;
             this.path = path;
             this.paint = paint;
         }
     }
 
+    // Fired after a stroke is finished
+    public interface OnStrokesChangedListener {
+        void onStrokesChanged(DrawView view);
+    }
+
+    // Brackets each eraser gesture, which may remove and add many strokes
+    public interface OnEraseListener {
+        void onEraseStarted(DrawView view);
+
+        void onEraseFinished(DrawView view);
+    }
+
+    // Finished strokes STROKES_PER_LAYER at a time, recorded as vectors so they stay sharp when
+    // the page is zoomed. A RenderNode where there is one, so the recording isn't even replayed
+    // into this view's display list; a Picture before API 29.
+    private static class StrokeLayer {
+        Picture picture;
+        RenderNode node;
+        boolean recorded;
+    }
+
     private final List<Stroke> strokes = new ArrayList<>();
-    private final Stack<Stroke> undoneStrokes = new Stack<>();
+    private final List<StrokeLayer> layers = new ArrayList<>();
+    // The same strokes by model stroke, for those the page's index finds under the eraser
+    private final Map<InkStroke, Stroke> strokesByInk = new IdentityHashMap<>();
 
     public DrawView(Context context) {
         super(context);
@@ -54,55 +133,171 @@ public class DrawView extends View {
         super(context, attrs);
     }
 
-    public void undo() {
-        if (!strokes.isEmpty()) {
-            Stroke stroke = strokes.remove(strokes.size() - 1);
-            undoneStrokes.push(stroke);
-            invalidate();
+    /**
+     * Shows {@code page}'s strokes and adds new ones to it. Called again with the same page
+     * after its strokes changed, e.g. by undo, only the layers from the first change on are
+     * recorded again.
+     */
+    public void setAnnotationPage(AnnotationPage page) {
+        List<InkStroke> inks = page.getStrokes();
+        int kept = 0;
+        if (page == this.page) {
+            while (kept < strokes.size() && kept < inks.size() && strokes.get(kept).ink == inks.get(kept)) {
+                kept++;
+            }
+        }
+        this.page = page;
+        for (int i = kept; i < strokes.size(); i++) {
+            strokesByInk.remove(strokes.get(i).ink);
         }
+        strokes.subList(kept, strokes.size()).clear();
+        for (int i = kept; i < inks.size(); i++) {
+            InkStroke ink = inks.get(i);
+            addStroke(new Stroke(ink, buildPath(ink.points), createPaint(ink.color, ink.width)));
+        }
+        invalidateLayersFrom(kept);
+        invalidate();
     }
 
-    public void redo() {
-        if (!undoneStrokes.isEmpty()) {
-            Stroke stroke = undoneStrokes.pop();
-            strokes.add(stroke);
-            invalidate();
+    /** Lets go of the page and everything drawn for it, e.g. once the view scrolls away. */
+    public void clearAnnotationPage() {
+        page = null;
+        strokes.clear();
+        strokesByInk.clear();
+        for (StrokeLayer layer : layers) {
+            releaseLayer(layer);
         }
+        layers.clear();
+        invalidate();
     }
 
     @Override
     protected void onDraw(Canvas canvas) {
         super.onDraw(canvas);
-        for (Stroke stroke : strokes) {
-            canvas.drawPath(stroke.path, stroke.paint);
+        if (canvas.isHardwareAccelerated()) {
+            drawLayers(canvas);
+        } else {
+            // A one-off into a bitmap, e.g. getBitmap(); not worth recording for
+            drawStrokes(canvas, 0, strokes.size());
         }
         if (currentPath != null && currentPaint != null) {
             canvas.drawPath(currentPath, currentPaint);
         }
+        if (erasing) {
+            canvas.drawCircle(eraserX, eraserY, eraserRadius, eraserPaint);
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        invalidateLayersFrom(0);
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        // Recorded again if the view comes back
+        for (StrokeLayer layer : layers) {
+            releaseLayer(layer);
+        }
+        layers.clear();
+    }
+
+    private void drawLayers(Canvas canvas) {
+        int layerCount = (strokes.size() + STROKES_PER_LAYER - 1) / STROKES_PER_LAYER;
+        while (layers.size() > layerCount) {
+            releaseLayer(layers.remove(layers.size() - 1));
+        }
+        while (layers.size() < layerCount) {
+            layers.add(new StrokeLayer());
+        }
+
+        for (int i = 0; i < layerCount; i++) {
+            StrokeLayer layer = layers.get(i);
+            int from = i * STROKES_PER_LAYER;
+            int to = Math.min(from + STROKES_PER_LAYER, strokes.size());
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+                if (layer.node == null) {
+                    layer.node = new RenderNode("DrawView strokes");
+                }
+                if (!layer.recorded) {
+                    layer.node.setPosition(0, 0, getWidth(), getHeight());
+                    drawStrokes(layer.node.beginRecording(), from, to);
+                    layer.node.endRecording();
+                    layer.recorded = true;
+                }
+                canvas.drawRenderNode(layer.node);
+            } else {
+                if (layer.picture == null) {
+                    layer.picture = new Picture();
+                }
+                if (!layer.recorded) {
+                    drawStrokes(layer.picture.beginRecording(getWidth(), getHeight()), from, to);
+                    layer.picture.endRecording();
+                    layer.recorded = true;
+                }
+                canvas.drawPicture(layer.picture);
+            }
+        }
+    }
+
+    private void drawStrokes(Canvas canvas, int from, int to) {
+        for (int i = from; i < to; i++) {
+            Stroke stroke = strokes.get(i);
+            if (!stroke.erased) {
+                canvas.drawPath(stroke.path, stroke.paint);
+            }
+        }
+    }
+
+    // The layers holding strokes from strokeIndex on are recorded again on the next draw
+    private void invalidateLayersFrom(int strokeIndex) {
+        for (int i = strokeIndex / STROKES_PER_LAYER; i < layers.size(); i++) {
+            layers.get(i).recorded = false;
+        }
+    }
+
+    // Just the layer holding the stroke at strokeIndex
+    private void invalidateLayerOf(int strokeIndex) {
+        int layer = strokeIndex / STROKES_PER_LAYER;
+        if (layer < layers.size()) {
+            layers.get(layer).recorded = false;
+        }
+    }
+
+    private void addStroke(Stroke stroke) {
+        stroke.index = strokes.size();
+        strokes.add(stroke);
+        strokesByInk.put(stroke.ink, stroke);
+    }
+
+    private static void releaseLayer(StrokeLayer layer) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q && layer.node != null) {
+            layer.node.discardDisplayList();
+        }
     }
 
     private float lastX, lastY;
+    // Where the last curve added to currentPath ended
+    private float segmentStartX, segmentStartY;
+    private final RectF dirtyBounds = new RectF();
+    private final RectF fittedBounds = new RectF();
+    private final Rect dirtyRect = new Rect();
     private Matrix inverseMatrix = new Matrix();
+    private final float[] mappedTouch = new float[2];
     @Override
     public boolean onTouchEvent(MotionEvent event) {
         if (!drawingEnabled) {
             return false;
         }
-        float x = event.getX();
-        float y = event.getY();
-
-        // Get the transformation matrix from the parent
-        if (getParent() instanceof ZoomableFrameLayout) {
-            ZoomableFrameLayout parentZoomLayout = (ZoomableFrameLayout) getParent();
-
-            // We need the *inverse* matrix to map screen points to canvas points
-            parentZoomLayout.getTransformationMatrix().invert(inverseMatrix);
-
-            float[] mappedPoints = new float[] { x, y };
-            inverseMatrix.mapPoints(mappedPoints);
-
-            x = mappedPoints[0];
-            y = mappedPoints[1];
+        // Touches arrive in screen space; ink is kept in the page's unzoomed space
+        boolean zoomed = getParent() instanceof ZoomableFrameLayout;
+        if (zoomed) {
+            ((ZoomableFrameLayout) getParent()).getTransformationMatrix().invert(inverseMatrix);
+        }
+        if (eraseMode != null) {
+            return onEraseTouchEvent(event, zoomed);
         }
 
         switch (event.getAction()) {
@@ -111,30 +306,38 @@ public class DrawView extends View {
                     getParent().requestDisallowInterceptTouchEvent(true);
                 }
 
+                mapTouch(event.getX(), event.getY(), zoomed);
+                float x = mappedTouch[0];
+                float y = mappedTouch[1];
                 currentPath = new Path();
                 currentPath.moveTo(x, y);
+                currentPoints.reset(event.getDownTime());
+                currentPoints.add(x, y, event.getPressure(), event.getEventTime());
 
-                currentPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-                currentPaint.setColor(settingsProvider.getCurrentPaintColor());
-                currentPaint.setStrokeWidth(settingsProvider.getCurrentStrokeWidth());
-                currentPaint.setStyle(Paint.Style.STROKE);
-                currentPaint.setStrokeJoin(Paint.Join.ROUND);
-                currentPaint.setStrokeCap(Paint.Cap.ROUND);
+                currentPaint = createPaint(settingsProvider.getCurrentPaintColor(),
+                        settingsProvider.getCurrentStrokeWidth());
 
                 lastX = x;
                 lastY = y;
+                segmentStartX = x;
+                segmentStartY = y;
 
-                undoneStrokes.clear();
-                invalidate();
+                dirtyBounds.set(x, y, x, y);
+                invalidateStrokeArea(dirtyBounds, currentPaint.getStrokeWidth());
                 return true;
 
             case MotionEvent.ACTION_MOVE:
-                float midX = (x + lastX) / 2;
-                float midY = (y + lastY) / 2;
-                currentPath.quadTo(lastX, lastY, midX, midY);
-                lastX = x;
-                lastY = y;
-                invalidate();
+                if (currentPath == null) return false;
+                dirtyBounds.set(segmentStartX, segmentStartY, segmentStartX, segmentStartY);
+                // Samples batched since the last frame come first, oldest to newest
+                for (int h = 0; h < event.getHistorySize(); h++) {
+                    mapTouch(event.getHistoricalX(h), event.getHistoricalY(h), zoomed);
+                    extendCurrentPath(mappedTouch[0], mappedTouch[1],
+                            event.getHistoricalPressure(h), event.getHistoricalEventTime(h));
+                }
+                mapTouch(event.getX(), event.getY(), zoomed);
+                extendCurrentPath(mappedTouch[0], mappedTouch[1], event.getPressure(), event.getEventTime());
+                invalidateStrokeArea(dirtyBounds, currentPaint.getStrokeWidth());
                 return true;
 
             case MotionEvent.ACTION_UP:
@@ -143,21 +346,254 @@ public class DrawView extends View {
                     getParent().requestDisallowInterceptTouchEvent(false);
                 }
 
-                if (currentPath != null && currentPaint != null) {
-                    strokes.add(new Stroke(currentPath, currentPaint));
+                boolean finished = currentPath != null && currentPaint != null;
+                if (finished) {
+                    float scale = zoomed ? ((ZoomableFrameLayout) getParent()).getScale() : 1f;
+                    float[] points = StrokeFit.simplify(currentPoints.toPoints(), SIMPLIFY_TOLERANCE_PX / scale);
+                    InkStroke ink = new InkStroke(points, currentPaint.getColor(), currentPaint.getStrokeWidth());
+                    if (page != null) {
+                        page.addStroke(ink);
+                    }
+                    Path path = buildPath(points);
+                    addStroke(new Stroke(ink, path, currentPaint));
+                    invalidateLayersFrom(strokes.size() - 1);
+
+                    // The fitted curve replaces the one drawn while inking; redraw where either was
+                    currentPath.computeBounds(dirtyBounds, true);
+                    path.computeBounds(fittedBounds, true);
+                    dirtyBounds.union(fittedBounds);
+                    invalidateStrokeArea(dirtyBounds, currentPaint.getStrokeWidth());
                 }
                 currentPath = null;
                 currentPaint = null;
-                invalidate();
+                if (finished) {
+                    notifyStrokesChanged();
+                }
                 return true;
         }
 
         return false;
     }
 
+    private boolean erasing;
+    // The eraser's centre and radius, in page space
+    private float eraserX, eraserY, eraserRadius;
+    private Paint eraserPaint;
+    private boolean erasedAny;
+    private final List<InkStroke> eraseCandidates = new ArrayList<>();
+    private final float[] inkBounds = new float[4];
+
+    private boolean onEraseTouchEvent(MotionEvent event, boolean zoomed) {
+        switch (event.getAction()) {
+            case MotionEvent.ACTION_DOWN:
+                if (getParent() != null) {
+                    getParent().requestDisallowInterceptTouchEvent(true);
+                }
+                float scale = zoomed ? ((ZoomableFrameLayout) getParent()).getScale() : 1f;
+                float density = getResources().getDisplayMetrics().density;
+                eraserRadius = ERASER_RADIUS_DP * density / scale;
+                if (eraserPaint == null) {
+                    eraserPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+                    eraserPaint.setStyle(Paint.Style.STROKE);
+                    eraserPaint.setColor(0x99000000);
+                }
+                eraserPaint.setStrokeWidth(density / scale);
+
+                erasing = true;
+                erasedAny = false;
+                if (eraseListener != null) {
+                    eraseListener.onEraseStarted(this);
+                }
+                mapTouch(event.getX(), event.getY(), zoomed);
+                eraserX = mappedTouch[0];
+                eraserY = mappedTouch[1];
+                eraseAt(eraserX, eraserY);
+                invalidateEraser();
+                return true;
+
+            case MotionEvent.ACTION_MOVE:
+                if (!erasing) return false;
+                invalidateEraser();
+                for (int h = 0; h < event.getHistorySize(); h++) {
+                    mapTouch(event.getHistoricalX(h), event.getHistoricalY(h), zoomed);
+                    eraseTo(mappedTouch[0], mappedTouch[1]);
+                }
+                mapTouch(event.getX(), event.getY(), zoomed);
+                eraseTo(mappedTouch[0], mappedTouch[1]);
+                invalidateEraser();
+                return true;
+
+            case MotionEvent.ACTION_UP:
+            case MotionEvent.ACTION_CANCEL:
+                if (getParent() != null) {
+                    getParent().requestDisallowInterceptTouchEvent(false);
+                }
+                if (!erasing) return true;
+                erasing = false;
+                invalidateEraser();
+                dropErasedStrokes();
+                if (eraseListener != null) {
+                    eraseListener.onEraseFinished(this);
+                }
+                if (erasedAny) {
+                    notifyStrokesChanged();
+                }
+                return true;
+        }
+        return false;
+    }
+
+    // Sweeps the eraser from where it was to x, y in steps of half its radius, so a fast swipe
+    // doesn't jump over thin lines
+    private void eraseTo(float x, float y) {
+        float dx = x - eraserX;
+        float dy = y - eraserY;
+        int steps = (int) Math.ceil(Math.sqrt(dx * dx + dy * dy) / (eraserRadius / 2f));
+        for (int i = 1; i <= steps; i++) {
+            eraseAt(eraserX + dx * i / steps, eraserY + dy * i / steps);
+        }
+        eraserX = x;
+        eraserY = y;
+    }
+
+    private void eraseAt(float x, float y) {
+        if (page == null) return;
+        eraseCandidates.clear();
+        page.findStrokesNear(x, y, eraserRadius, eraseCandidates);
+        for (InkStroke ink : eraseCandidates) {
+            if (eraseMode == EraseMode.WHOLE_STROKE) {
+                if (StrokeEraser.touches(ink, x, y, eraserRadius)) {
+                    removeErased(ink);
+                }
+                continue;
+            }
+            List<float[]> pieces = StrokeEraser.erase(ink, x, y, eraserRadius);
+            if (pieces == null) continue;
+            Stroke erased = removeErased(ink);
+            for (float[] piece : pieces) {
+                InkStroke rest = new InkStroke(piece, ink.color, ink.width);
+                page.addStroke(rest);
+                Paint paint = erased != null ? erased.paint : createPaint(ink.color, ink.width);
+                addStroke(new Stroke(rest, buildPath(piece), paint));
+                invalidateLayerOf(strokes.size() - 1);
+            }
+        }
+        eraseCandidates.clear();
+    }
+
+    // Takes ink off the page. Its stroke stays in strokes, marked, until the gesture ends, so
+    // the others keep their layers and only the one it was in is recorded again.
+    private Stroke removeErased(InkStroke ink) {
+        page.removeStroke(ink);
+        erasedAny = true;
+        Stroke stroke = strokesByInk.remove(ink);
+        if (stroke != null) {
+            stroke.erased = true;
+            invalidateLayerOf(stroke.index);
+        }
+        // The bounds already take in the line width
+        ink.getBounds(inkBounds);
+        dirtyBounds.set(inkBounds[0], inkBounds[1], inkBounds[2], inkBounds[3]);
+        invalidateStrokeArea(dirtyBounds, 0);
+        return stroke;
+    }
+
+    private void dropErasedStrokes() {
+        int firstErased = -1;
+        int kept = 0;
+        for (int i = 0; i < strokes.size(); i++) {
+            Stroke stroke = strokes.get(i);
+            if (stroke.erased) {
+                if (firstErased < 0) firstErased = i;
+                continue;
+            }
+            stroke.index = kept;
+            strokes.set(kept++, stroke);
+        }
+        strokes.subList(kept, strokes.size()).clear();
+        if (firstErased >= 0) {
+            invalidateLayersFrom(firstErased);
+        }
+    }
+
+    private void invalidateEraser() {
+        dirtyBounds.set(eraserX - eraserRadius, eraserY - eraserRadius, eraserX + eraserRadius, eraserY + eraserRadius);
+        invalidateStrokeArea(dirtyBounds, eraserPaint.getStrokeWidth());
+    }
+
+    // Redraws the area a stroke piece inside `bounds` covers. Only software rendering limits the
+    // redraw to this rect; with hardware acceleration, the default, the framework ignores it and
+    // the view's display list is rebuilt whole, which the cached stroke layers keep cheap.
+    private void invalidateStrokeArea(RectF bounds, float strokeWidth) {
+        // Half the width either side of the line, plus a pixel of antialiasing
+        float outset = strokeWidth / 2f + 1f;
+        bounds.inset(-outset, -outset);
+        bounds.roundOut(dirtyRect);
+        invalidate(dirtyRect);
+    }
+
+    public boolean hasStrokes() {
+        return !strokesByInk.isEmpty();
+    }
+
+    private void mapTouch(float x, float y, boolean zoomed) {
+        mappedTouch[0] = x;
+        mappedTouch[1] = y;
+        if (zoomed) {
+            inverseMatrix.mapPoints(mappedTouch);
+        }
+    }
+
+    // Adds a sample and a quick curve to it, and grows dirtyBounds over the curve. The finished
+    // stroke is simplified and fitted again by buildPath.
+    private void extendCurrentPath(float x, float y, float pressure, long time) {
+        currentPoints.add(x, y, pressure, time);
+        float midX = (x + lastX) / 2;
+        float midY = (y + lastY) / 2;
+        currentPath.quadTo(lastX, lastY, midX, midY);
+
+        // The new curve stays inside the box around its start, control and end points
+        dirtyBounds.union(lastX, lastY);
+        dirtyBounds.union(midX, midY);
+
+        segmentStartX = midX;
+        segmentStartY = midY;
+        lastX = x;
+        lastY = y;
+    }
+
+    private static Paint createPaint(int color, float width) {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setColor(color);
+        paint.setStrokeWidth(width);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        return paint;
+    }
+
+    /** The curve a stroke is shown as, fitted through its points by {@link StrokeFit#fitCurves}. */
+    public static Path buildPath(float[] points) {
+        Path path = new Path();
+        if (points.length < 2) return path;
+        path.moveTo(points[0], points[1]);
+        float[] curves = StrokeFit.fitCurves(points);
+        for (int i = 0; i + 5 < curves.length; i += 6) {
+            path.cubicTo(curves[i], curves[i + 1], curves[i + 2], curves[i + 3], curves[i + 4], curves[i + 5]);
+        }
+        return path;
+    }
+
+    private void notifyStrokesChanged() {
+        if (strokesChangedListener != null) {
+            strokesChangedListener.onStrokesChanged(this);
+        }
+    }
+
     public Bitmap getBitmap() {
         // Create a bitmap with the same size as the view
-        Bitmap bitmap = Bitmap.createBitmap(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
+        // Comes from the shared pool; callers hand it back once drawn
+        Bitmap bitmap = BitmapPool.getInstance().get(getWidth(), getHeight(), Bitmap.Config.ARGB_8888);
         Canvas canvas = new Canvas(bitmap);
 
         // Draw the view's content to the bitmap
@@ -7,6 +7,7 @@ import android.graphics.Color;
 import android.graphics.DashPathEffect;
 import android.graphics.Paint;
 import android.graphics.Rect;
+import android.graphics.RectF;
 import android.graphics.drawable.Drawable;
 import android.util.TypedValue;
 import android.view.GestureDetector;
@@ -19,10 +20,12 @@ import androidx.core.graphics.drawable.DrawableCompat;
 
 import com.mukesh.pdfly.R;
 import com.mukesh.pdfly.pdfrenderer.activity.PdfEditorActivity;
+import com.mukesh.pdfly.pdfrenderer.model.ShapeModel;
+import com.mukesh.pdfly.pdfrenderer.model.ShapeType;
 import com.mukesh.pdfly.signature.views.OverlayElementView;
 
 public class ShapeElementView extends OverlayElementView {
-    private PdfEditorActivity.ShapeType shapeType;
+    private final ShapeModel model;
 
     private Bitmap resizeIcon, rotateIcon, deleteIcon;
     private Rect resizeHandleRect, rotateHandleRect, deleteHandleRect;
@@ -32,7 +35,6 @@ public class ShapeElementView extends OverlayElementView {
     private boolean isResizing = false, isRotating = false;
 
     private float dX, dY;
-    private float rotationAngle = 0f;
     private static final int SELECTION_PADDING_DP = 30; // Increased padding for handles
     private int selectionPaddingPx;
     private Bitmap menuIcon;
@@ -41,10 +43,15 @@ public class ShapeElementView extends OverlayElementView {
 
 
 
-    public ShapeElementView(Context context, PdfEditorActivity.ShapeType type, int color, float stroke) {
+    public ShapeElementView(Context context, ShapeType type, int color, float stroke) {
+        this(context, new ShapeModel(type, color, stroke));
+    }
+
+    public ShapeElementView(Context context, ShapeModel model) {
         super(context);
         selectionPaddingPx = dpToPx(SELECTION_PADDING_DP);
-        this.shapeType = type;
+        this.model = model;
+        model.inset = selectionPaddingPx;
         setWillNotDraw(false);
 
         // Load icons
@@ -55,8 +62,6 @@ public class ShapeElementView extends OverlayElementView {
 
         // Paints
         shapePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        shapePaint.setColor(color);
-        shapePaint.setStrokeWidth(stroke);
         shapePaint.setStyle(Paint.Style.STROKE);
 
         selectionPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
@@ -86,10 +91,13 @@ public class ShapeElementView extends OverlayElementView {
         float centerY = h / 2f;
 
         canvas.save();
-        canvas.rotate(rotationAngle, centerX, centerY); // Rotate around the view's center
+        canvas.rotate(model.angle, centerX, centerY); // Rotate around the view's center
+
+        shapePaint.setColor(model.color);
+        shapePaint.setStrokeWidth(model.strokeWidth);
 
         // Draw the shape within the padded area
-        switch (shapeType) {
+        switch (model.type) {
             case RECTANGLE:
                 canvas.drawRect(shapeLeft, shapeTop, shapeRight, shapeBottom, shapePaint);
                 break;
@@ -218,17 +226,23 @@ public class ShapeElementView extends OverlayElementView {
 //                        }
 
                         ViewGroup.LayoutParams lp = getLayoutParams();
-                        lp.width = newWidth;
-                        lp.height = newHeight;
-                        setLayoutParams(lp);
-                        invalidate();
+                        // A new size relays out and redraws the view; the same size needs neither
+                        if (lp.width != newWidth || lp.height != newHeight) {
+                            lp.width = newWidth;
+                            lp.height = newHeight;
+                            setLayoutParams(lp);
+                        }
                     } else if (isRotating) {
                         float centerX = getWidth() / 2f;
                         float centerY = getHeight() / 2f;
                         float dx = x - centerX;
                         float dy = y - centerY;
-                        rotationAngle = (float) Math.toDegrees(Math.atan2(dy, dx));
-                        invalidate();
+                        float angle = (float) Math.toDegrees(Math.atan2(dy, dx));
+                        // Only the element's own bounds are redrawn, and only if it turned
+                        if (angle != model.angle) {
+                            model.angle = angle;
+                            invalidate();
+                        }
                     } else {
                         setX(event.getRawX() - dX);
                         setY(event.getRawY() - dY);
@@ -281,31 +295,58 @@ public class ShapeElementView extends OverlayElementView {
         );
     }
 
+    @Override
+    public ShapeModel getModel() {
+        return model;
+    }
+
     public void setStrokeWidth(float width) {
-        shapePaint.setStrokeWidth(width);
+        model.strokeWidth = width;
         invalidate();
+        notifyModelChanged();
     }
 
     @Override
     public void setColor(int color) {
-        shapePaint.setColor(color);
+        model.color = color;
         invalidate();
+        notifyModelChanged();
     }
 
     @Override
     public void increaseSize() {
-        shapePaint.setStrokeWidth(getStrokeWidth() + 2f);
+        model.strokeWidth += 2f;
         invalidate();
+        notifyModelChanged();
     }
 
     @Override
     public void decreaseSize() {
-        shapePaint.setStrokeWidth(getStrokeWidth() + 2f);
+        model.strokeWidth += 2f;
         invalidate();
+        notifyModelChanged();
+    }
+
+    public ShapeType getShapeType() {
+        return model.type;
+    }
+
+    public int getColor() {
+        return model.color;
+    }
+
+    public float getRotationAngle() {
+        return model.angle;
+    }
+
+    // Area the shape is drawn in, inside the handle padding
+    public RectF getShapeBounds() {
+        return new RectF(selectionPaddingPx, selectionPaddingPx,
+                getWidth() - selectionPaddingPx, getHeight() - selectionPaddingPx);
     }
 
     public float getStrokeWidth() {
-        return shapePaint.getStrokeWidth();
+        return model.strokeWidth;
     }
 
 
@@ -21,11 +21,14 @@ import androidx.core.graphics.drawable.DrawableCompat;
 
 import com.mukesh.pdfly.R;
 import com.mukesh.pdfly.pdfrenderer.activity.PdfEditorActivity;
+import com.mukesh.pdfly.pdfrenderer.model.TextModel;
 import com.mukesh.pdfly.signature.views.OverlayElementView;
 
 public class TextElementView extends OverlayElementView {
     private static final int SELECTION_PADDING_DP = 30;
+    private static final int TEXT_PADDING_PX = 10;
     private int selectionPaddingPx;
+    private final TextModel model;
 
     private Paint selectionPaint;
     private boolean isSelected = false;
@@ -42,27 +45,37 @@ public class TextElementView extends OverlayElementView {
     private TextView textView;
 
     public TextElementView(Context context, String text, int textColor, float textSizeSp) {
+        this(context, new TextModel(text, textColor, TypedValue.applyDimension(
+                TypedValue.COMPLEX_UNIT_SP, textSizeSp, context.getResources().getDisplayMetrics())));
+    }
+
+    public TextElementView(Context context, TextModel model) {
         super(context);
         setWillNotDraw(false);
         selectionPaddingPx = dpToPx(SELECTION_PADDING_DP);
+        this.model = model;
+        model.padding = TEXT_PADDING_PX;
         initPaints();
         initIcons();
-        initTextView(context, text, textColor, textSizeSp);
+        initTextView(context);
         initGestureListeners();
     }
 
-    private void initTextView(Context context, String text, int textColor, float textSizeSp) {
+    private void initTextView(Context context) {
         textView = new TextView(context);
-        textView.setText(text);
-        textView.setTextColor(textColor);
-        textView.setTextSize(textSizeSp);
+        textView.setText(model.text);
+        textView.setTextColor(model.color);
+        textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, model.textSizePx);
         textView.setGravity(Gravity.CENTER);
-        textView.setBackgroundColor(Color.TRANSPARENT);
-        textView.setPadding(10, 10, 10, 10);
+        textView.setBackgroundColor(model.backgroundColor);
+        textView.setPadding(TEXT_PADDING_PX, TEXT_PADDING_PX, TEXT_PADDING_PX, TEXT_PADDING_PX);
         textView.setLayoutParams(new LayoutParams(
                 LayoutParams.MATCH_PARENT,
                 LayoutParams.MATCH_PARENT
         ));
+        setBold(model.bold);
+        setUnderline(model.underline);
+        setStrikethrough(model.strikethrough);
 
         addView(textView);
     }
@@ -167,17 +180,21 @@ public class TextElementView extends OverlayElementView {
                         newHeight = Math.max(minSize, newHeight);
 
                         ViewGroup.LayoutParams lp = getLayoutParams();
-                        lp.width = newWidth;
-                        lp.height = newHeight;
-                        setLayoutParams(lp);
-                        invalidate();
+                        if (lp.width != newWidth || lp.height != newHeight) {
+                            lp.width = newWidth;
+                            lp.height = newHeight;
+                            setLayoutParams(lp);
+                        }
                     } else if (isRotating) {
                         float centerX = getWidth() / 2f;
                         float centerY = getHeight() / 2f;
                         float dx = x - centerX;
                         float dy = y - centerY;
-                        rotationAngle = (float) Math.toDegrees(Math.atan2(dy, dx));
-                        invalidate();
+                        float angle = (float) Math.toDegrees(Math.atan2(dy, dx));
+                        if (angle != rotationAngle) {
+                            rotationAngle = angle;
+                            invalidate();
+                        }
                     } else {
                         if(!isSelected){
                             ((PdfEditorActivity) getContext()).onElementSelected(TextElementView.this);
@@ -227,22 +244,35 @@ public class TextElementView extends OverlayElementView {
                 TypedValue.COMPLEX_UNIT_DIP, dp, getResources().getDisplayMetrics());
     }
 
+    @Override
+    public TextModel getModel() {
+        return model;
+    }
+
     public void setText(String newText) {
+        model.text = newText;
         textView.setText(newText);
+        notifyModelChanged();
     }
 
     @Override
     public void setColor(int color) {
+        model.color = color;
         textView.setTextColor(color);
+        notifyModelChanged();
     }
 
 
     public void setSize(float sp) {
         textView.setTextSize(sp);
+        model.textSizePx = textView.getTextSize();
+        notifyModelChanged();
     }
 
     public void setBackgroundColorInt(int color) {
+        model.backgroundColor = color;
         textView.setBackgroundColor(color);
+        notifyModelChanged();
     }
 
     @Override
@@ -253,11 +283,15 @@ public class TextElementView extends OverlayElementView {
     }
 
     public String getText() {
-        return textView.getText().toString();
+        return model.text;
+    }
+
+    public TextView getTextView() {
+        return textView;
     }
 
     public float getTextSize() {
-        return textView.getTextSize();
+        return model.textSizePx;
     }
 
     private static final float MIN_TEXT_SIZE = 8f; // Minimum text size in sp
@@ -270,12 +304,10 @@ public class TextElementView extends OverlayElementView {
         float newSize = currentSize + SIZE_INCREMENT;
 
         if (newSize <= MAX_TEXT_SIZE) {
-            textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, newSize);
-            invalidate();
+            setTextSizePx(newSize);
         } else {
             // Optional: Show message or visual feedback when max size reached
-            textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, MAX_TEXT_SIZE);
-            invalidate();
+            setTextSizePx(MAX_TEXT_SIZE);
         }
     }
 
@@ -285,48 +317,59 @@ public class TextElementView extends OverlayElementView {
         float newSize = currentSize - SIZE_INCREMENT;
 
         if (newSize >= MIN_TEXT_SIZE) {
-            textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, newSize);
-            invalidate();
+            setTextSizePx(newSize);
         } else {
             // Optional: Show message or visual feedback when min size reached
-            textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, MIN_TEXT_SIZE);
-            invalidate();
+            setTextSizePx(MIN_TEXT_SIZE);
         }
     }
 
+    private void setTextSizePx(float px) {
+        model.textSizePx = px;
+        textView.setTextSize(TypedValue.COMPLEX_UNIT_PX, px);
+        invalidate();
+        notifyModelChanged();
+    }
+
     // Toggle bold style
     public void setBold(boolean enable) {
+        model.bold = enable;
         textView.setTypeface(null, enable ? Typeface.BOLD : Typeface.NORMAL);
         invalidate();
+        notifyModelChanged();
     }
 
     // Toggle underline
     public void setUnderline(boolean enable) {
+        model.underline = enable;
         textView.setPaintFlags(enable ?
                 textView.getPaintFlags() | Paint.UNDERLINE_TEXT_FLAG :
                 textView.getPaintFlags() & ~Paint.UNDERLINE_TEXT_FLAG);
         invalidate();
+        notifyModelChanged();
     }
 
     // Toggle strikethrough
     public void setStrikethrough(boolean enable) {
+        model.strikethrough = enable;
         textView.setPaintFlags(enable ?
                 textView.getPaintFlags() | Paint.STRIKE_THRU_TEXT_FLAG :
                 textView.getPaintFlags() & ~Paint.STRIKE_THRU_TEXT_FLAG);
         invalidate();
+        notifyModelChanged();
     }
 
     // Get current style states
     public boolean isBold() {
-        return textView.getTypeface() != null && textView.getTypeface().isBold();
+        return model.bold;
     }
 
     public boolean isUnderline() {
-        return (textView.getPaintFlags() & Paint.UNDERLINE_TEXT_FLAG) != 0;
+        return model.underline;
     }
 
     public boolean isStrikethrough() {
-        return (textView.getPaintFlags() & Paint.STRIKE_THRU_TEXT_FLAG) != 0;
+        return model.strikethrough;
     }
 }
 
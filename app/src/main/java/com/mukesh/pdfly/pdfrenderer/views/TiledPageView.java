@@ -0,0 +1,221 @@
+package com.mukesh.pdfly.pdfrenderer.views;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.util.LongSparseArray;
+import android.view.View;
+
+import com.mukesh.pdfly.pdfrenderer.helper.BitmapPool;
+
+import java.util.concurrent.Future;
+
+/**
+ * Draws sharp tiles of a zoomed-in page on top of its low-resolution base render. Tiles are
+ * rendered at a quantized zoom level, so small pinch changes reuse the tiles already on screen.
+ * Only tiles in the visible part of the page are kept. A tile that finishes after the view was
+ * cleared, rebound to another page or scrolled away from is dropped, not drawn.
+ *
+ * Must be a direct, full-size child of a {@link ZoomableFrameLayout}.
+ */
+public class TiledPageView extends View {
+
+    public interface TileSource {
+        Future<?> requestTile(int pageIndex, int contentWidth, int contentHeight, float zoom,
+                              int tileX, int tileY, int tileSize, TileCallback callback);
+    }
+
+    public interface TileCallback {
+        void onTileRendered(Bitmap tile);
+    }
+
+    // Below this the base render is sharp enough
+    private static final float MIN_TILED_ZOOM = 1.25f;
+    private static final float ZOOM_STEP = 0.5f;
+    // Wait for the gesture to settle before asking for tiles
+    private static final long UPDATE_DELAY_MS = 100;
+
+    private final int tileSize;
+    private final Paint tilePaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final LongSparseArray<Bitmap> tiles = new LongSparseArray<>();
+    private final LongSparseArray<Future<?>> pendingTiles = new LongSparseArray<>();
+    private final Matrix inverseMatrix = new Matrix();
+    private final Rect visibleRect = new Rect();
+    private final RectF contentRect = new RectF();
+    private final RectF tileRect = new RectF();
+    private final Runnable updateRunnable = this::updateTiles;
+
+    private TileSource tileSource;
+    private int pageIndex = -1;
+    private float tileZoom = 1f;
+    // Bumped whenever the tiles are dropped, so results of requests made before are ignored
+    private int generation;
+    // Tiles wanted by the last update, inclusive; empty until there is one
+    private int fromX;
+    private int toX = -1;
+    private int fromY;
+    private int toY = -1;
+
+    public TiledPageView(Context context) {
+        super(context);
+        int screenWidth = context.getResources().getDisplayMetrics().widthPixels;
+        tileSize = screenWidth >= 1080 ? 512 : 256;
+    }
+
+    public void bind(TileSource tileSource, int pageIndex) {
+        // Whatever is still rendering is for the page shown before
+        removeCallbacks(updateRunnable);
+        clearTiles();
+        this.tileSource = tileSource;
+        this.pageIndex = pageIndex;
+    }
+
+    public void scheduleTileUpdate() {
+        removeCallbacks(updateRunnable);
+        postDelayed(updateRunnable, UPDATE_DELAY_MS);
+    }
+
+    private void updateTiles() {
+        if (tileSource == null || getWidth() == 0 || !(getParent() instanceof ZoomableFrameLayout)) return;
+        ZoomableFrameLayout page = (ZoomableFrameLayout) getParent();
+
+        float scale = page.getScale();
+        float zoom = quantizeZoom(scale);
+        if (zoom != tileZoom) {
+            clearTiles();
+            tileZoom = zoom;
+        }
+        if (scale < MIN_TILED_ZOOM || !getLocalVisibleRect(visibleRect)) {
+            clearTiles();
+            return;
+        }
+
+        // Map the on-screen part of the page back to unzoomed content coordinates
+        contentRect.set(visibleRect);
+        page.getTransformationMatrix().invert(inverseMatrix);
+        inverseMatrix.mapRect(contentRect);
+
+        int maxX = (int) Math.ceil(getWidth() * zoom / tileSize) - 1;
+        int maxY = (int) Math.ceil(getHeight() * zoom / tileSize) - 1;
+        fromX = clamp((int) (contentRect.left * zoom / tileSize), maxX);
+        toX = clamp((int) (contentRect.right * zoom / tileSize), maxX);
+        fromY = clamp((int) (contentRect.top * zoom / tileSize), maxY);
+        toY = clamp((int) (contentRect.bottom * zoom / tileSize), maxY);
+
+        for (int k = tiles.size() - 1; k >= 0; k--) {
+            long key = tiles.keyAt(k);
+            if (!isInRange(key)) {
+                BitmapPool.getInstance().put(tiles.valueAt(k));
+                tiles.removeAt(k);
+            }
+        }
+        for (int k = pendingTiles.size() - 1; k >= 0; k--) {
+            long key = pendingTiles.keyAt(k);
+            if (!isInRange(key)) {
+                pendingTiles.valueAt(k).cancel(false);
+                pendingTiles.removeAt(k);
+            }
+        }
+
+        for (int y = fromY; y <= toY; y++) {
+            for (int x = fromX; x <= toX; x++) {
+                long key = tileKey(x, y);
+                if (tiles.get(key) != null || pendingTiles.get(key) != null) continue;
+
+                int requestGeneration = generation;
+                Future<?> task = tileSource.requestTile(pageIndex, getWidth(), getHeight(), zoom, x, y, tileSize,
+                        tile -> onTileRendered(key, requestGeneration, tile));
+                pendingTiles.put(key, task);
+            }
+        }
+    }
+
+    private void onTileRendered(long key, int requestGeneration, Bitmap tile) {
+        // From before a zoom change, clear or rebind; a newer request may be pending under this key
+        if (requestGeneration != generation) {
+            if (tile != null) BitmapPool.getInstance().put(tile);
+            return;
+        }
+        pendingTiles.remove(key);
+        if (tile == null) return;
+
+        if (!isInRange(key) || tiles.get(key) != null) {
+            BitmapPool.getInstance().put(tile);
+            return;
+        }
+        tiles.put(key, tile);
+        invalidate();
+    }
+
+    /** Drops every tile, leaving only the base render. */
+    public void clearTiles() {
+        generation++;
+        tileZoom = 1f;
+        fromX = 0;
+        toX = -1;
+        fromY = 0;
+        toY = -1;
+        for (int k = 0; k < pendingTiles.size(); k++) {
+            pendingTiles.valueAt(k).cancel(false);
+        }
+        pendingTiles.clear();
+
+        if (tiles.size() == 0) return;
+        for (int k = 0; k < tiles.size(); k++) {
+            BitmapPool.getInstance().put(tiles.valueAt(k));
+        }
+        tiles.clear();
+        invalidate();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        // The parent has already applied the zoom, so tiles are drawn in content coordinates
+        float size = tileSize / tileZoom;
+        for (int k = 0; k < tiles.size(); k++) {
+            long key = tiles.keyAt(k);
+            int x = tileX(key);
+            int y = tileY(key);
+            tileRect.set(x * size, y * size, (x + 1) * size, (y + 1) * size);
+            canvas.drawBitmap(tiles.valueAt(k), null, tileRect, tilePaint);
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        removeCallbacks(updateRunnable);
+        clearTiles();
+    }
+
+    private static float quantizeZoom(float zoom) {
+        return (float) Math.ceil(zoom / ZOOM_STEP) * ZOOM_STEP;
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(value, max));
+    }
+
+    private boolean isInRange(long key) {
+        int x = tileX(key);
+        int y = tileY(key);
+        return x >= fromX && x <= toX && y >= fromY && y <= toY;
+    }
+
+    private static long tileKey(int x, int y) {
+        return ((long) x << 32) | (y & 0xffffffffL);
+    }
+
+    private static int tileX(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int tileY(long key) {
+        return (int) key;
+    }
+}
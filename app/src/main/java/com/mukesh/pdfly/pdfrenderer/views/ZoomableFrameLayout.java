@@ -3,10 +3,13 @@ package com.mukesh.pdfly.pdfrenderer.views;
 import android.content.Context;
 import android.graphics.Canvas;
 import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
 import android.util.AttributeSet;
 import android.util.TypedValue;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
+import android.view.ViewParent;
 import android.widget.FrameLayout;
 
 //mukesh
@@ -20,6 +23,7 @@ public class ZoomableFrameLayout extends FrameLayout {
 
     private ScaleGestureDetector scaleDetector;
     private Matrix scaleMatrix = new Matrix();
+    private final RectF dirtyBounds = new RectF();
     private float[] matrixValues = new float[9];
 
     // These are for dragging
@@ -122,6 +126,7 @@ public class ZoomableFrameLayout extends FrameLayout {
                             scaleMatrix.postTranslate(dx, dy);
                             fixTranslation();
                             invalidate();
+                            notifyTransformChanged();
 
                             lastTouchX = currentX; // Update last touch for next move
                             lastTouchY = currentY;
@@ -176,6 +181,19 @@ public class ZoomableFrameLayout extends FrameLayout {
 
     // ... (rest of your ZoomableFrameLayout code - dispatchDraw, getScale, fixTranslation, ScaleListener, getTransformationMatrix, setDrawingMode)
     // The ScaleListener should remain largely the same, ensuring it sets isZoomOrPanActive=true and requests disallow.
+    // Children are drawn through scaleMatrix, so the areas they invalidate have to go through it too.
+    // Only reached under software rendering; hardware-accelerated invalidation doesn't pass rects up.
+    @Override
+    public ViewParent invalidateChildInParent(int[] location, Rect dirty) {
+        dirtyBounds.set(dirty);
+        dirtyBounds.offset(location[0], location[1]);
+        scaleMatrix.mapRect(dirtyBounds);
+        dirtyBounds.roundOut(dirty);
+        location[0] = 0;
+        location[1] = 0;
+        return super.invalidateChildInParent(location, dirty);
+    }
+
     @Override
     protected void dispatchDraw(Canvas canvas) {
         canvas.save();
@@ -184,7 +202,7 @@ public class ZoomableFrameLayout extends FrameLayout {
         canvas.restore();
     }
 
-    private float getScale() {
+    public float getScale() {
         scaleMatrix.getValues(matrixValues);
         return matrixValues[Matrix.MSCALE_X];
     }
@@ -246,15 +264,41 @@ public class ZoomableFrameLayout extends FrameLayout {
             scaleMatrix.postScale(scaleFactor, scaleFactor, detector.getFocusX(), detector.getFocusY());
             fixTranslation();
             invalidate();
+            notifyTransformChanged();
 
             isZoomOrPanActive = true; // We are actively zooming
             getParent().requestDisallowInterceptTouchEvent(true); // Ensure parent doesn't intercept during scale
             return true;
         }
     }
+    /** Back to unzoomed, e.g. before the view is reused for another page. */
+    public void resetZoom() {
+        scaleMatrix.reset();
+        isZoomOrPanActive = false;
+        invalidate();
+        notifyTransformChanged();
+    }
+
     public Matrix getTransformationMatrix() {
         return scaleMatrix;
     }
+
+    public interface OnTransformChangedListener {
+        void onTransformChanged(ZoomableFrameLayout layout);
+    }
+
+    private OnTransformChangedListener transformChangedListener;
+
+    // Called on every pan/zoom step, so keep the listener cheap
+    public void setOnTransformChangedListener(OnTransformChangedListener listener) {
+        this.transformChangedListener = listener;
+    }
+
+    private void notifyTransformChanged() {
+        if (transformChangedListener != null) {
+            transformChangedListener.onTransformChanged(this);
+        }
+    }
     private boolean isDrawingMode = false;
 
     // Add a public method to set the mode from your Activity
@@ -3,15 +3,21 @@ package com.mukesh.pdfly.signature.views;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Rect;
 import android.util.AttributeSet;
 import android.view.GestureDetector;
 import android.view.MotionEvent;
 import android.view.ScaleGestureDetector;
+import android.view.ViewGroup;
 import android.widget.FrameLayout;
 
 import com.mukesh.pdfly.pdfrenderer.activity.PdfEditorActivity;
+import com.mukesh.pdfly.pdfrenderer.helper.BitmapPool;
+import com.mukesh.pdfly.pdfrenderer.model.ElementModel;
 
+/**
+ * On-screen projection of an {@link ElementModel}. Gestures move the view directly and the
+ * model catches up when each one ends; everything else is read from the model.
+ */
 public abstract class OverlayElementView extends FrameLayout {
 
     private final ScaleGestureDetector scaleDetector;
@@ -67,6 +73,69 @@ public abstract class OverlayElementView extends FrameLayout {
         });
     }
 
+    public abstract ElementModel getModel();
+
+    /** Copies the view's position, size, scale and rotation into its model. */
+    public void syncModel() {
+        ElementModel model = getModel();
+        model.x = getX();
+        model.y = getY();
+        model.width = getWidth();
+        model.height = getHeight();
+        model.scale = getScaleX();
+        model.rotation = getRotation();
+    }
+
+    /** Moves and sizes the view to match its model, e.g. once it has been read back from storage. */
+    public void applyModel() {
+        ElementModel model = getModel();
+        if (model.width > 0 && model.height > 0) {
+            ViewGroup.LayoutParams lp = getLayoutParams();
+            if (lp == null) {
+                lp = new LayoutParams((int) model.width, (int) model.height);
+            }
+            lp.width = (int) model.width;
+            lp.height = (int) model.height;
+            // The position is all in the translation, so the view must be laid out at 0, 0
+            if (lp instanceof MarginLayoutParams) {
+                ((MarginLayoutParams) lp).setMargins(0, 0, 0, 0);
+            }
+            setLayoutParams(lp);
+        }
+        setX(model.x);
+        setY(model.y);
+        scaleFactor = model.scale;
+        rotationDegrees = model.rotation;
+        applyTransformations();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        // Also the first point the view's real position and size are known
+        syncModel();
+        notifyModelChanged();
+    }
+
+    @Override
+    public boolean dispatchTouchEvent(MotionEvent event) {
+        boolean handled = super.dispatchTouchEvent(event);
+        // Every move, resize and rotate gesture ends here, whichever handle drove it
+        int action = event.getActionMasked();
+        if (action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
+            syncModel();
+            notifyModelChanged();
+        }
+        return handled;
+    }
+
+    /** Tells the editor the model changed, once the view is on a page. */
+    protected void notifyModelChanged() {
+        if (getParent() != null && getContext() instanceof PdfEditorActivity) {
+            ((PdfEditorActivity) getContext()).onOverlayChanged(this);
+        }
+    }
+
     public void applyTransformations() {
         setScaleX(scaleFactor);
         setScaleY(scaleFactor);
@@ -116,18 +185,10 @@ public abstract class OverlayElementView extends FrameLayout {
             return true;
         }
     }
-    public boolean hitTest(float globalX, float globalY) {
-        int[] location = new int[2];
-        getLocationOnScreen(location);
-        Rect rect = new Rect(location[0], location[1],
-                location[0] + getWidth(),
-                location[1] + getHeight());
-        return rect.contains((int) globalX, (int) globalY);
-    }
-
     public Bitmap getBitmap() {
         // Create a bitmap with the view's current dimensions including scale
-        Bitmap bitmap = Bitmap.createBitmap(
+        // Comes from the shared pool; callers hand it back once drawn
+        Bitmap bitmap = BitmapPool.getInstance().get(
                 (int) (getWidth() * getScaleX()),
                 (int) (getHeight() * getScaleY()),
                 Bitmap.Config.ARGB_8888
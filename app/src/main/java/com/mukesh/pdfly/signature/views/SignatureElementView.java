@@ -3,6 +3,7 @@ package com.mukesh.pdfly.signature.views;
 import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Color;
+import android.graphics.Rect;
 import android.util.TypedValue;
 import android.view.LayoutInflater;
 import android.view.MotionEvent;
@@ -12,6 +13,7 @@ import android.widget.ImageButton;
 import android.widget.ImageView;
 
 import com.mukesh.pdfly.pdfrenderer.activity.PdfEditorActivity;
+import com.mukesh.pdfly.pdfrenderer.model.SignatureModel;
 import com.mukesh.pdfly.R;
 
 public class SignatureElementView extends OverlayElementView {
@@ -27,10 +29,13 @@ public class SignatureElementView extends OverlayElementView {
     private View signatureContainer;
     private View signatureBackground;
     private Bitmap signatureBitmap;
+    private final SignatureModel model;
 
 
-    public SignatureElementView(Context context, Bitmap signatureBitmap) {
+    // signatureBitmap holds the pixels model.imageKey refers to
+    public SignatureElementView(Context context, SignatureModel model, Bitmap signatureBitmap) {
         super(context);
+        this.model = model;
         this.signatureBitmap = signatureBitmap;
         initView(signatureBitmap);
     }
@@ -98,19 +103,7 @@ public class SignatureElementView extends OverlayElementView {
                         float newScale = Math.max(0.3f, Math.min(5f, initialScaleX * scale));
                         setScaleX(newScale);
                         setScaleY(newScale);
-                        //keep buttons size
-                        float minScale = 0.8f; // Prevent scaling too small
-                        float maxScale = 4.0f; // Optional: limit very large scale
-                        newScale = Math.max(minScale, Math.min(maxScale, newScale));
-
-                        deleteButton.setScaleX(1f / newScale);
-                        deleteButton.setScaleY(1f / newScale);
-
-                        resizeHandle.setScaleX(1f / newScale);
-                        resizeHandle.setScaleY(1f / newScale);
-
-                        rotateHandle.setScaleX(1f / newScale);
-                        rotateHandle.setScaleY(1f / newScale);
+                        updateHandleScale(newScale);
                         return true;
 
                     case MotionEvent.ACTION_UP:
@@ -181,6 +174,42 @@ public class SignatureElementView extends OverlayElementView {
         });
     }
 
+    //keep buttons size
+    private void updateHandleScale(float scale) {
+        float minScale = 0.8f; // Prevent scaling too small
+        float maxScale = 4.0f; // Optional: limit very large scale
+        scale = Math.max(minScale, Math.min(maxScale, scale));
+
+        deleteButton.setScaleX(1f / scale);
+        deleteButton.setScaleY(1f / scale);
+
+        resizeHandle.setScaleX(1f / scale);
+        resizeHandle.setScaleY(1f / scale);
+
+        rotateHandle.setScaleX(1f / scale);
+        rotateHandle.setScaleY(1f / scale);
+    }
+
+    @Override
+    public SignatureModel getModel() {
+        return model;
+    }
+
+    @Override
+    public void syncModel() {
+        super.syncModel();
+        if (signatureImage.getWidth() > 0) {
+            model.imageWidth = signatureImage.getWidth();
+            model.imageHeight = signatureImage.getHeight();
+        }
+    }
+
+    @Override
+    public void applyModel() {
+        super.applyModel();
+        updateHandleScale(model.scale);
+    }
+
     @Override
     public void setSelectedState(boolean selected) {
         super.setSelectedState(selected);
@@ -190,28 +219,15 @@ public class SignatureElementView extends OverlayElementView {
         signatureContainer.setBackgroundResource(selected? R.drawable.bg_element_selected: Color.TRANSPARENT);
 
     }
-    @Override
-    public boolean hitTest(float globalX, float globalY) {
-        int[] location = new int[2];
-        getLocationOnScreen(location);
-
-        float localX = globalX - location[0];
-        float localY = globalY - location[1];
-
-        if (localX < 0 || localY < 0 || localX >= getWidth() || localY >= getHeight()) {
-            return false;
-        }
-
-        if (signatureBitmap != null) {
-            int bmpX = (int) (localX * signatureBitmap.getWidth() / getWidth());
-            int bmpY = (int) (localY * signatureBitmap.getHeight() / getHeight());
+    public Bitmap getSignatureBitmap() {
+        return signatureBitmap;
+    }
 
-            if (bmpX >= 0 && bmpY >= 0 && bmpX < signatureBitmap.getWidth() && bmpY < signatureBitmap.getHeight()) {
-                int pixel = signatureBitmap.getPixel(bmpX, bmpY);
-                return Color.alpha(pixel) > 30; // Only count mostly opaque pixels
-            }
-        }
-        return false;
+    // Where the signature image sits inside this view, before the view's own scale and rotation
+    public Rect getSignatureBounds() {
+        Rect bounds = new Rect(0, 0, signatureImage.getWidth(), signatureImage.getHeight());
+        offsetDescendantRectToMyCoords(signatureImage, bounds);
+        return bounds;
     }
 
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package com.mukesh.pdfly.pdfrenderer.export;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class VectorIconTest {
+
+    @Test
+    public void parsePathData_absoluteCommands() {
+        VectorIcon.FilledPath path = VectorIcon.parsePathData(0xFF61AF1D, "M10,20L30,40C1,2 3,4 5,6Z");
+
+        assertEquals(0xFF61AF1D, path.color);
+        assertArrayEquals(new byte[]{VectorIcon.MOVE, VectorIcon.LINE, VectorIcon.CUBIC, VectorIcon.CLOSE},
+                path.verbs);
+        assertArrayEquals(new float[]{10f, 20f, 30f, 40f, 1f, 2f, 3f, 4f, 5f, 6f}, path.points, 0f);
+    }
+
+    @Test
+    public void parsePathData_relativeCommandsStartFromTheCurrentPoint() {
+        VectorIcon.FilledPath path = VectorIcon.parsePathData(0, "m1,1 l2,3 h4 v-1 c1,1 2,2 3,3");
+
+        assertArrayEquals(new float[]{1f, 1f, 3f, 4f, 7f, 4f, 7f, 3f, 8f, 4f, 9f, 5f, 10f, 6f}, path.points, 0f);
+    }
+
+    @Test
+    public void parsePathData_numbersAfterAMoveAreLines() {
+        VectorIcon.FilledPath path = VectorIcon.parsePathData(0, "M0 0 5 5 10 0");
+
+        assertArrayEquals(new byte[]{VectorIcon.MOVE, VectorIcon.LINE, VectorIcon.LINE}, path.verbs);
+    }
+
+    @Test
+    public void parsePathData_compactNumbers() {
+        // Signs and second decimal points start new numbers; exponents don't
+        VectorIcon.FilledPath path = VectorIcon.parsePathData(0, "M1-2.5.5.5L1e1-1.5e-1");
+
+        assertArrayEquals(new float[]{1f, -2.5f, 0.5f, 0.5f, 10f, -0.15f}, path.points, 1e-6f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parsePathData_unsupportedCommand_throws() {
+        VectorIcon.parsePathData(0, "M0,0 A5,5 0 0 1 10,10");
+    }
+}
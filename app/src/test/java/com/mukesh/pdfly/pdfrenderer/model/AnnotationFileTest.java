@@ -0,0 +1,163 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import static org.junit.Assert.*;
+
+public class AnnotationFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void varLong_roundTrips() throws IOException {
+        long[] values = {0, 1, 127, 128, 300, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (long value : values) {
+            AnnotationFile.writeVarLong(out, value);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (long value : values) {
+            assertEquals(value, AnnotationFile.readVarLong(in));
+        }
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    public void varLong_usesOneBytePerSevenBits() throws IOException {
+        assertEquals(1, encodedLength(127));
+        assertEquals(2, encodedLength(128));
+        assertEquals(3, encodedLength(16384));
+        assertEquals(10, encodedLength(-1));
+    }
+
+    @Test(expected = IOException.class)
+    public void readVarInt_rejectsValuesPastIntRange() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AnnotationFile.writeVarLong(new DataOutputStream(bytes), Integer.MAX_VALUE + 1L);
+        AnnotationFile.readVarInt(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    public void stroke_roundTripsNegativeDeltas() {
+        // Zigzag keeps small steps back and to the left as short as small steps forward
+        float[] points = {10f, 10f, 9.5f, 12f, -3.25f, 0f, -3.25f, -40.0625f, 500f, -40f};
+        InkStroke stroke = new InkStroke(points, 0xFF112233, 3.5f);
+        stroke.id = 42;
+
+        InkStroke decoded = AnnotationFile.decodeStroke(AnnotationFile.encodeStroke(stroke));
+
+        assertEquals(42, decoded.id);
+        assertEquals(0xFF112233, decoded.color);
+        assertEquals(3.5f, decoded.width, 0f);
+        assertArrayEquals(points, decoded.points, 1f / 32f);
+    }
+
+    @Test
+    public void stroke_roundsPointsToSixteenthsOfAPixel() {
+        InkStroke stroke = new InkStroke(new float[]{0.03f, 1.97f}, 0, 1f);
+
+        InkStroke decoded = AnnotationFile.decodeStroke(AnnotationFile.encodeStroke(stroke));
+
+        assertArrayEquals(new float[]{0f, 2f}, decoded.points, 0f);
+    }
+
+    @Test
+    public void text_longerThanWriteUtfAllows_roundTrips() {
+        StringBuilder content = new StringBuilder();
+        while (content.length() < 100_000) {
+            content.append("Grüße, 世界. ");
+        }
+        TextModel text = new TextModel(content.toString(), 0xFF000000, 24f);
+        text.backgroundColor = 0x80FFFF00;
+        text.bold = true;
+        text.strikethrough = true;
+
+        TextModel decoded = (TextModel) AnnotationFile.decodeElement(AnnotationFile.encodeElement(text));
+
+        assertEquals(text.text, decoded.text);
+        assertEquals(0x80FFFF00, decoded.backgroundColor);
+        assertTrue(decoded.bold);
+        assertFalse(decoded.underline);
+        assertTrue(decoded.strikethrough);
+    }
+
+    @Test
+    public void file_roundTripsPagesAndImages() throws IOException {
+        AnnotationDocument document = new AnnotationDocument();
+        AnnotationPage first = document.getPage(0);
+        first.setSize(600, 800);
+        first.addStroke(new InkStroke(new float[]{1f, 2f, 30f, 40f}, 0xFFFF0000, 2f));
+        AnnotationPage third = document.getPage(2);
+        third.setSize(600, 800);
+        ShapeModel shape = new ShapeModel(ShapeType.ARROW, 0xFF00FF00, 4f);
+        shape.x = 50f;
+        shape.width = 100f;
+        shape.height = 60f;
+        shape.rotation = 30f;
+        third.addElement(shape);
+        third.addElement(new SignatureModel("signature-1", 300f, 120f));
+
+        File file = folder.newFile("document.pdfly");
+        SortedMap<Integer, byte[]> pages = new TreeMap<>();
+        pages.put(0, AnnotationFile.encodePage(first));
+        pages.put(2, AnnotationFile.encodePage(third));
+        Map<String, byte[]> images = new LinkedHashMap<>();
+        images.put("signature-1", new byte[]{1, 2, 3});
+        AnnotationFile.write(file, pages, images);
+
+        Map<String, byte[]> imagesRead = new HashMap<>();
+        AnnotationDocument read = AnnotationFile.read(file, imagesRead);
+
+        assertEquals(1, read.getPage(0).getStrokes().size());
+        assertArrayEquals(new float[]{1f, 2f, 30f, 40f}, read.getPage(0).getStrokes().get(0).points, 0f);
+        assertEquals(2, read.getPage(2).getElements().size());
+        ShapeModel shapeRead = (ShapeModel) read.getPage(2).getElements().get(0);
+        assertEquals(ShapeType.ARROW, shapeRead.type);
+        assertEquals(30f, shapeRead.rotation, 0f);
+        assertEquals(800, read.getPage(2).getHeight());
+        assertArrayEquals(new byte[]{1, 2, 3}, imagesRead.get("signature-1"));
+    }
+
+    @Test
+    public void readPage_readsOnlyThatPage() throws IOException {
+        AnnotationDocument document = new AnnotationDocument();
+        SortedMap<Integer, byte[]> pages = new TreeMap<>();
+        for (int i = 0; i < 3; i++) {
+            AnnotationPage page = document.getPage(i);
+            page.addStroke(new InkStroke(new float[]{i, i, i + 1, i + 1}, 0, 1f));
+            pages.put(i, AnnotationFile.encodePage(page));
+        }
+        File file = folder.newFile("pages.pdfly");
+        AnnotationFile.write(file, pages, new HashMap<>());
+
+        AnnotationDocument read = new AnnotationDocument();
+        AnnotationPage page = AnnotationFile.readPage(file, 1, read);
+
+        assertEquals(1, page.pageIndex);
+        assertEquals(1, read.getPages().size());
+        assertNull(AnnotationFile.readPage(file, 7, read));
+    }
+
+    private static int encodedLength(long value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        AnnotationFile.writeVarLong(new DataOutputStream(bytes), value);
+        return bytes.size();
+    }
+}
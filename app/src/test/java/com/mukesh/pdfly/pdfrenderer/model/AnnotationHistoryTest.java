@@ -0,0 +1,156 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AnnotationHistoryTest {
+
+    private AnnotationDocument document;
+    private AnnotationPage page;
+    private AnnotationHistory history;
+
+    @Before
+    public void setUp() {
+        document = new AnnotationDocument();
+        page = document.getPage(0);
+        history = new AnnotationHistory(document);
+    }
+
+    @Test
+    public void undoAndRedo_singleStroke() {
+        page.addStroke(stroke(0f));
+
+        assertSame(page, history.undo());
+        assertTrue(page.getStrokes().isEmpty());
+        assertFalse(history.canUndo());
+
+        assertSame(page, history.redo());
+        assertEquals(1, page.getStrokes().size());
+        assertFalse(history.canRedo());
+    }
+
+    @Test
+    public void group_isUndoneAndRedoneAsOneStep() {
+        InkStroke before = stroke(0f);
+        page.addStroke(before);
+
+        // What one eraser gesture does: the stroke goes, its pieces take its place
+        history.beginGroup();
+        page.removeStroke(before);
+        page.addStroke(stroke(1f));
+        page.addStroke(stroke(2f));
+        history.endGroup();
+
+        history.undo();
+        assertEquals(1, page.getStrokes().size());
+        assertEquals(before.id, page.getStrokes().get(0).id);
+
+        history.redo();
+        assertEquals(2, page.getStrokes().size());
+        assertNull(page.findStroke(before.id));
+
+        // The stroke drawn before the group is still its own step
+        history.undo();
+        history.undo();
+        assertTrue(page.getStrokes().isEmpty());
+        assertFalse(history.canUndo());
+    }
+
+    @Test
+    public void editsAfterEndGroup_areSeparateSteps() {
+        history.beginGroup();
+        page.addStroke(stroke(0f));
+        history.endGroup();
+        page.addStroke(stroke(1f));
+
+        history.undo();
+        assertEquals(1, page.getStrokes().size());
+    }
+
+    @Test
+    public void newEdit_clearsRedo() {
+        page.addStroke(stroke(0f));
+        history.undo();
+        page.addStroke(stroke(1f));
+
+        assertFalse(history.canRedo());
+    }
+
+    @Test
+    public void elementChanges_inQuickSuccession_coalesce() {
+        TextModel text = new TextModel("a", 0, 12f);
+        page.addElement(text);
+        text.textSizePx = 14f;
+        page.elementChanged(text);
+        text.textSizePx = 16f;
+        page.elementChanged(text);
+
+        // The add and both changes were one burst
+        history.undo();
+        assertTrue(page.getElements().isEmpty());
+        assertFalse(history.canUndo());
+
+        history.redo();
+        assertEquals(16f, ((TextModel) page.getElements().get(0)).textSizePx, 0f);
+    }
+
+    @Test
+    public void oldestCommands_areDroppedPastTheByteCap() {
+        int added = 60;
+        for (int i = 0; i < added; i++) {
+            page.addStroke(bigStroke(i));
+        }
+
+        int undone = 0;
+        while (history.undo() != null) {
+            undone++;
+        }
+
+        assertTrue("nothing was dropped", undone < added);
+        assertTrue("everything was dropped", undone > 0);
+        // The strokes whose commands were dropped stay drawn
+        assertEquals(added - undone, page.getStrokes().size());
+    }
+
+    @Test
+    public void droppingAGroup_dropsAllOfIt() {
+        history.beginGroup();
+        for (int i = 0; i < 10; i++) {
+            page.addStroke(bigStroke(i));
+        }
+        history.endGroup();
+        // Enough on top that the group no longer fits
+        for (int i = 0; i < 60; i++) {
+            page.addStroke(bigStroke(100 + i));
+        }
+
+        while (history.undo() != null) {
+            // Until nothing is left
+        }
+
+        int leftFromGroup = 0;
+        for (InkStroke stroke : page.getStrokes()) {
+            if (stroke.color < 100) leftFromGroup++;
+        }
+        // None of the group was undone on its own
+        assertEquals(10, leftFromGroup);
+    }
+
+    private static InkStroke stroke(float offset) {
+        return new InkStroke(new float[]{offset, offset, offset + 10f, offset + 10f}, 0, 2f);
+    }
+
+    // Over 100 KB encoded; the colour tells strokes apart once their ids are gone
+    private static InkStroke bigStroke(int color) {
+        Random random = new Random(color);
+        float[] points = new float[40_000];
+        for (int i = 0; i < points.length; i++) {
+            points[i] = random.nextFloat() * 2000f;
+        }
+        return new InkStroke(points, color, 2f);
+    }
+}
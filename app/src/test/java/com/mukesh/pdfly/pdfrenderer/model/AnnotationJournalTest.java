@@ -0,0 +1,130 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class AnnotationJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void replay_appliesRecordsInOrder() throws IOException {
+        AnnotationDocument source = new AnnotationDocument();
+        AnnotationPage page = source.getPage(3);
+        page.setSize(400, 500);
+        InkStroke kept = new InkStroke(new float[]{0f, 0f, 10f, 10f}, 1, 2f);
+        InkStroke removed = new InkStroke(new float[]{5f, 5f, 6f, 6f}, 2, 2f);
+        page.addStroke(kept);
+        page.addStroke(removed);
+        TextModel text = new TextModel("first", 0, 12f);
+        page.addElement(text);
+        text.text = "second";
+
+        File journal = writeJournal(
+                AnnotationJournal.strokeAdded(page, kept),
+                AnnotationJournal.strokeAdded(page, removed),
+                AnnotationJournal.elementPut(page, new TextModel("ignored", 0, 12f)),
+                AnnotationJournal.elementPut(page, text),
+                AnnotationJournal.strokeRemoved(page, removed),
+                AnnotationJournal.image("signature", new byte[]{7, 8, 9}));
+
+        AnnotationDocument replayed = new AnnotationDocument();
+        Map<String, byte[]> images = new HashMap<>();
+        assertEquals(6, AnnotationJournal.replay(journal, replayed, images));
+
+        AnnotationPage replayedPage = replayed.getPage(3);
+        assertEquals(400, replayedPage.getWidth());
+        assertEquals(1, replayedPage.getStrokes().size());
+        assertEquals(kept.id, replayedPage.getStrokes().get(0).id);
+        // The second put has the id of the element already there, so it replaced it
+        TextModel replayedText = (TextModel) replayedPage.findElement(text.id);
+        assertEquals("second", replayedText.text);
+        assertArrayEquals(new byte[]{7, 8, 9}, images.get("signature"));
+    }
+
+    @Test
+    public void replay_stopsAtTornTail() throws IOException {
+        AnnotationPage page = new AnnotationDocument().getPage(0);
+        InkStroke first = new InkStroke(new float[]{0f, 0f, 1f, 1f}, 0, 1f);
+        InkStroke second = new InkStroke(new float[]{2f, 2f, 3f, 3f}, 0, 1f);
+        page.addStroke(first);
+        page.addStroke(second);
+        File journal = writeJournal(AnnotationJournal.strokeAdded(page, first),
+                AnnotationJournal.strokeAdded(page, second));
+
+        // A crash in the middle of appending the second record
+        try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        AnnotationDocument replayed = new AnnotationDocument();
+        assertEquals(1, AnnotationJournal.replay(journal, replayed, new HashMap<>()));
+        assertEquals(1, replayed.getPage(0).getStrokes().size());
+        assertEquals(first.id, replayed.getPage(0).getStrokes().get(0).id);
+    }
+
+    @Test
+    public void replay_stopsAtRecordFailingItsCrc() throws IOException {
+        AnnotationPage page = new AnnotationDocument().getPage(0);
+        InkStroke first = new InkStroke(new float[]{0f, 0f, 1f, 1f}, 0, 1f);
+        InkStroke second = new InkStroke(new float[]{2f, 2f, 3f, 3f}, 0, 1f);
+        InkStroke third = new InkStroke(new float[]{4f, 4f, 5f, 5f}, 0, 1f);
+        page.addStroke(first);
+        page.addStroke(second);
+        page.addStroke(third);
+        byte[] firstRecord = AnnotationJournal.strokeAdded(page, first);
+        File journal = writeJournal(firstRecord, AnnotationJournal.strokeAdded(page, second),
+                AnnotationJournal.strokeAdded(page, third));
+
+        // Flip a bit in the second record's payload, just past its length
+        long position = AnnotationJournal.header().length + firstRecord.length + 5;
+        try (RandomAccessFile file = new RandomAccessFile(journal, "rw")) {
+            file.seek(position);
+            int b = file.read();
+            file.seek(position);
+            file.write(b ^ 0x01);
+        }
+
+        AnnotationDocument replayed = new AnnotationDocument();
+        assertEquals(1, AnnotationJournal.replay(journal, replayed, new HashMap<>()));
+        assertEquals(1, replayed.getPage(0).getStrokes().size());
+    }
+
+    @Test
+    public void replay_ofHeaderOnly_appliesNothing() throws IOException {
+        AnnotationDocument replayed = new AnnotationDocument();
+        assertEquals(0, AnnotationJournal.replay(writeJournal(), replayed, new HashMap<>()));
+        assertTrue(replayed.isEmpty());
+    }
+
+    @Test(expected = IOException.class)
+    public void replay_rejectsOtherFiles() throws IOException {
+        File file = folder.newFile("not-a-journal");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[]{'%', 'P', 'D', 'F', '-', '1', '.', '7'});
+        }
+        AnnotationJournal.replay(file, new AnnotationDocument(), new HashMap<>());
+    }
+
+    private File writeJournal(byte[]... records) throws IOException {
+        File file = folder.newFile();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(AnnotationJournal.header());
+            for (byte[] record : records) {
+                out.write(record);
+            }
+        }
+        return file;
+    }
+}
@@ -0,0 +1,91 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SpatialGridTest {
+
+    private final SpatialGrid<String> grid = new SpatialGrid<>();
+
+    @Test
+    public void query_findsOverlappingItemsOnly() {
+        grid.put("near", 10f, 10f, 20f, 20f);
+        grid.put("far", 1000f, 1000f, 1010f, 1010f);
+        // Same cell as the query, but the boxes don't overlap
+        grid.put("sameCell", 60f, 60f, 70f, 70f);
+
+        assertEquals(list("near"), query(15f, 15f, 30f, 30f));
+        assertEquals(list("far"), query(1005f, 1005f, 1005f, 1005f));
+        assertTrue(query(500f, 500f, 510f, 510f).isEmpty());
+    }
+
+    @Test
+    public void query_returnsItemsSpanningCellsOnce() {
+        grid.put("wide", 0f, 0f, 1000f, 1000f);
+
+        assertEquals(list("wide"), query(-10f, -10f, 2000f, 2000f));
+        // And again on the next query
+        assertEquals(list("wide"), query(500f, 500f, 500f, 500f));
+    }
+
+    @Test
+    public void put_againMovesTheItem() {
+        grid.put("item", 0f, 0f, 10f, 10f);
+        grid.put("item", 500f, 500f, 510f, 510f);
+
+        assertTrue(query(5f, 5f, 5f, 5f).isEmpty());
+        assertEquals(list("item"), query(505f, 505f, 505f, 505f));
+    }
+
+    @Test
+    public void remove_and_clear() {
+        grid.put("a", 0f, 0f, 10f, 10f);
+        grid.put("b", 0f, 0f, 10f, 10f);
+
+        grid.remove("a");
+        assertEquals(list("b"), query(5f, 5f, 5f, 5f));
+
+        grid.clear();
+        assertTrue(query(5f, 5f, 5f, 5f).isEmpty());
+    }
+
+    @Test
+    public void negativeCoordinates_landInTheirOwnCells() {
+        grid.put("left", -300f, -300f, -290f, -290f);
+        grid.put("right", 290f, 290f, 300f, 300f);
+
+        assertEquals(list("left"), query(-295f, -295f, -295f, -295f));
+        assertEquals(list("right"), query(295f, 295f, 295f, 295f));
+    }
+
+    @Test
+    public void itemsAreKeptByIdentity() {
+        String first = new String("same");
+        String second = new String("same");
+        grid.put(first, 0f, 0f, 10f, 10f);
+        grid.put(second, 0f, 0f, 10f, 10f);
+
+        grid.remove(first);
+        List<String> found = query(5f, 5f, 5f, 5f);
+        assertEquals(1, found.size());
+        assertSame(second, found.get(0));
+    }
+
+    private List<String> query(float left, float top, float right, float bottom) {
+        List<String> out = new ArrayList<>();
+        grid.query(left, top, right, bottom, out);
+        return out;
+    }
+
+    private static List<String> list(String... items) {
+        List<String> list = new ArrayList<>();
+        for (String item : items) {
+            list.add(item);
+        }
+        return list;
+    }
+}
@@ -0,0 +1,83 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StrokeEraserTest {
+
+    // A horizontal line along y = 50 from x = 0 to 200, 4 wide
+    private static InkStroke line() {
+        float[] points = new float[202];
+        for (int i = 0; i <= 100; i++) {
+            points[i * 2] = i * 2;
+            points[i * 2 + 1] = 50f;
+        }
+        return new InkStroke(points, 0, 4f);
+    }
+
+    @Test
+    public void touches_countsTheLineWidth() {
+        InkStroke stroke = line();
+
+        // The centre line is 10 away; the ink reaches 2 of that
+        assertFalse(StrokeEraser.touches(stroke, 100f, 60f, 7f));
+        assertTrue(StrokeEraser.touches(stroke, 100f, 60f, 9f));
+    }
+
+    @Test
+    public void erase_inTheMiddle_leavesTwoPieces() {
+        List<float[]> pieces = StrokeEraser.erase(line(), 100f, 50f, 10f);
+
+        assertEquals(2, pieces.size());
+        float[] left = pieces.get(0);
+        float[] right = pieces.get(1);
+        assertEquals(0f, left[0], 1e-3f);
+        // Cut where the round caps, 2 out, just touch the eraser
+        assertEquals(88f, left[left.length - 2], 1e-3f);
+        assertEquals(112f, right[0], 1e-3f);
+        assertEquals(200f, right[right.length - 2], 1e-3f);
+    }
+
+    @Test
+    public void erase_missing_returnsNull() {
+        assertNull(StrokeEraser.erase(line(), 100f, 80f, 10f));
+    }
+
+    @Test
+    public void erase_atAnEnd_leavesOnePiece() {
+        List<float[]> pieces = StrokeEraser.erase(line(), 0f, 50f, 10f);
+
+        assertEquals(1, pieces.size());
+        assertEquals(12f, pieces.get(0)[0], 1e-3f);
+    }
+
+    @Test
+    public void erase_coveringEverything_leavesNothing() {
+        List<float[]> pieces = StrokeEraser.erase(line(), 100f, 50f, 500f);
+
+        assertNotNull(pieces);
+        assertTrue(pieces.isEmpty());
+    }
+
+    @Test
+    public void erase_dot() {
+        InkStroke dot = new InkStroke(new float[]{5f, 5f}, 0, 4f);
+
+        assertTrue(StrokeEraser.erase(dot, 5f, 5f, 1f).isEmpty());
+        assertFalse(StrokeEraser.touches(dot, 20f, 5f, 1f));
+    }
+
+    @Test
+    public void touches_followsTheCurveNotTheStraightLines() {
+        // The curve leaves the middle point level and rounds the corner the points make
+        InkStroke arc = new InkStroke(new float[]{0f, 100f, 100f, 0f, 200f, 100f}, 0, 2f);
+
+        // On the straight line from the middle point to the end, but inside the curve's bend
+        assertFalse(StrokeEraser.touches(arc, 125f, 25f, 3f));
+        // On the curve, well off that straight line
+        assertTrue(StrokeEraser.touches(arc, 125f, 7f, 3f));
+    }
+}
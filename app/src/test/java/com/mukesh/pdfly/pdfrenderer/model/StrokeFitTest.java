@@ -0,0 +1,99 @@
+package com.mukesh.pdfly.pdfrenderer.model;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class StrokeFitTest {
+
+    @Test
+    public void simplify_straightLine_keepsOnlyTheEnds() {
+        float[] points = new float[100];
+        for (int i = 0; i < 50; i++) {
+            points[i * 2] = i;
+            points[i * 2 + 1] = i * 0.5f;
+        }
+
+        assertArrayEquals(new float[]{0f, 0f, 49f, 24.5f}, StrokeFit.simplify(points, 0.5f), 0f);
+    }
+
+    @Test
+    public void simplify_keepsPointsFartherThanTheTolerance() {
+        // The second and fourth points are about 0.14 and 0.21 off the lines through their neighbours
+        float[] points = {0f, 0f, 5f, 5.2f, 10f, 10f, 15f, 5.3f, 20f, 0f};
+
+        assertArrayEquals(points, StrokeFit.simplify(points, 0.1f), 0f);
+        assertArrayEquals(new float[]{0f, 0f, 10f, 10f, 15f, 5.3f, 20f, 0f}, StrokeFit.simplify(points, 0.2f), 0f);
+        assertArrayEquals(new float[]{0f, 0f, 10f, 10f, 20f, 0f}, StrokeFit.simplify(points, 0.5f), 0f);
+    }
+
+    @Test
+    public void simplify_shortStrokes_areCopiedAsTheyAre() {
+        float[] points = {1f, 2f, 3f, 4f};
+        float[] simplified = StrokeFit.simplify(points, 10f);
+
+        assertArrayEquals(points, simplified, 0f);
+        assertNotSame(points, simplified);
+    }
+
+    @Test
+    public void simplify_longStroke_doesNotOverflowTheStack() {
+        float[] points = new float[200_000];
+        for (int i = 0; i < points.length / 2; i++) {
+            points[i * 2] = i;
+            points[i * 2 + 1] = (i % 2) * 10f;
+        }
+
+        assertEquals(points.length, StrokeFit.simplify(points, 1f).length);
+    }
+
+    @Test
+    public void fitCurves_passesThroughEveryPoint() {
+        float[] points = {0f, 0f, 10f, 5f, 20f, 0f, 30f, 8f};
+        float[] curves = StrokeFit.fitCurves(points);
+
+        assertEquals(3 * 6, curves.length);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(points[i * 2 + 2], curves[i * 6 + 4], 0f);
+            assertEquals(points[i * 2 + 3], curves[i * 6 + 5], 0f);
+        }
+    }
+
+    @Test
+    public void fitCurves_isSmoothThroughGentleTurns() {
+        float[] points = {0f, 0f, 10f, 2f, 20f, 0f};
+        float[] curves = StrokeFit.fitCurves(points);
+
+        // The handles either side of the middle point lie on one line through it
+        float inX = points[2] - curves[2];
+        float inY = points[3] - curves[3];
+        float outX = curves[6] - points[2];
+        float outY = curves[7] - points[3];
+        assertEquals(0f, inX * outY - inY * outX, 1e-4f);
+        assertTrue(inX * outX + inY * outY > 0);
+    }
+
+    @Test
+    public void fitCurves_keepsSharpTurnsAsCorners() {
+        float[] points = {0f, 0f, 10f, 0f, 0f, 1f};
+        float[] curves = StrokeFit.fitCurves(points);
+
+        // Each handle at the corner points back along its own segment
+        assertEquals(0f, curves[3], 1e-4f);
+        assertTrue(curves[2] < 10f);
+        assertTrue(curves[6] < 10f);
+        assertTrue(curves[7] > 0f);
+    }
+
+    @Test
+    public void fitCurves_straightSegment_hasHandlesOnTheLine() {
+        float[] curves = StrokeFit.fitCurves(new float[]{0f, 0f, 30f, 0f});
+
+        assertArrayEquals(new float[]{10f, 0f, 20f, 0f, 30f, 0f}, curves, 1e-4f);
+    }
+
+    @Test
+    public void fitCurves_singlePoint_hasNoCurves() {
+        assertEquals(0, StrokeFit.fitCurves(new float[]{5f, 5f}).length);
+    }
+}